@@ -18,16 +18,58 @@ package org.jzenith.core;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Injector;
 import com.google.inject.Module;
+import lombok.NonNull;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 public abstract class AbstractPlugin {
 
+    private static final String PLUGIN_SUFFIX = "Plugin";
+
+    private final Set<Class<? extends AbstractPlugin>> dependencies = new LinkedHashSet<>();
+
+    /**
+     * @return the name of the plugin as used in logs and metrics, e.g. {@code rest} for the {@code RestPlugin}
+     */
+    public String getName() {
+        final String simpleName = getClass().getSimpleName();
+        final String name = simpleName.endsWith(PLUGIN_SUFFIX) && simpleName.length() > PLUGIN_SUFFIX.length()
+                ? simpleName.substring(0, simpleName.length() - PLUGIN_SUFFIX.length())
+                : simpleName;
+
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the plugins that have to be started before this plugin is started
+     */
+    public Set<Class<? extends AbstractPlugin>> getDependencies() {
+        return Collections.unmodifiableSet(dependencies);
+    }
+
+    @SafeVarargs
+    protected final void addDependencies(@NonNull Class<? extends AbstractPlugin>... plugins) {
+        this.dependencies.addAll(Arrays.asList(plugins));
+    }
+
     protected List<Module> getModules() {
         return ImmutableList.of();
     }
 
     protected abstract CompletableFuture<String> start(Injector deploymentOptions);
 
+    /**
+     * Called on shutdown, after all plugins depending on this plugin are stopped. Plugins should release
+     * their resources here and complete once they are done.
+     */
+    protected CompletableFuture<String> stop(Injector injector) {
+        return CompletableFuture.completedFuture("Done");
+    }
+
 }
@@ -27,29 +27,58 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Module;
+import com.google.inject.Singleton;
 import com.google.inject.multibindings.Multibinder;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.logging.SLF4JLogDelegateFactory;
 import lombok.NonNull;
 import one.util.streamex.StreamEx;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LifeCycle;
 import org.apache.logging.log4j.core.async.AsyncLoggerContextSelector;
+import org.apache.logging.log4j.core.impl.Log4jContextFactory;
 import org.apache.logging.log4j.core.util.Constants;
+import org.apache.logging.log4j.core.util.ShutdownCallbackRegistry;
+import org.jzenith.core.configuration.ConfigurationProvider;
+import org.jzenith.core.configuration.ConfigurationSource;
 import org.jzenith.core.configuration.ExtraConfiguration;
 import org.jzenith.core.health.HealthCheck;
+import org.jzenith.core.health.HealthCheckScheduler;
+import org.jzenith.core.health.StartupHealthCheck;
 import org.jzenith.core.metrics.JZenithDefaultExports;
+import org.jzenith.core.metrics.StartupReport;
+import org.jzenith.core.util.CompletableHandler;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 public class JZenith {
 
+    /**
+     * Stops the applications whose injector has been created, the latest first
+     */
+    private static final Deque<Runnable> SHUTDOWN_ACTIONS = new ConcurrentLinkedDeque<>();
+
     static {
         System.setProperty(Constants.LOG4J_CONTEXT_SELECTOR, AsyncLoggerContextSelector.class.getName());
         System.setProperty(LoggerFactory.LOGGER_DELEGATE_FACTORY_CLASS_NAME, SLF4JLogDelegateFactory.class.getName());
+        // Logging is shut down by our own shutdown hook, after everything else has been stopped. It replaces the hook
+        // of Log4j right away, so the logs of a startup that fails before the injector exists are flushed as well.
+        System.setProperty(ShutdownCallbackRegistry.SHUTDOWN_HOOK_ENABLED, "false");
+        removeLog4jShutdownHook();
+        Runtime.getRuntime().addShutdownHook(new Thread(JZenith::shutdownAll, "jzenith-shutdown"));
         JZenithDefaultExports.initialize();
     }
 
@@ -59,6 +88,9 @@ public class JZenith {
     private final LinkedList<AbstractPlugin> plugins = Lists.newLinkedList();
     private final LinkedList<Module> modules = Lists.newLinkedList();
     private final Map<String, String> extraConfiguration = Maps.newHashMap();
+    private Path configurationFile;
+    private Injector injector;
+    private volatile PluginLifecycle startedPlugins;
 
     private final CoreConfiguration configuration;
 
@@ -85,53 +117,188 @@ public class JZenith {
             log.debug("jZenith starting up");
         }
 
-        final Vertx vertx = Vertx.vertx();
-        final Injector injector = createInjector(vertx);
+        final PluginLifecycle pluginLifecycle = new PluginLifecycle(plugins);
+        final Injector injector = getOrCreateInjector();
+        final StartupReport startupReport = injector.getInstance(StartupReport.class);
+        final StartupHealthCheck startupHealthCheck = injector.getInstance(StartupHealthCheck.class);
+        final Vertx vertx = injector.getInstance(Vertx.class);
         StreamEx.of(vertx.verticleFactories())
                 .select(GuiceVerticleFactory.class)
                 .findFirst()
                 .ifPresent(guiceVerticleFactory -> guiceVerticleFactory.setInjector(injector));
 
-        final CompletableFuture[] deploymentResults = plugins.stream()
-                .map(plugin -> plugin.start(injector))
-                .toArray(CompletableFuture[]::new);
+        final HealthCheckScheduler healthCheckScheduler = injector.getInstance(HealthCheckScheduler.class);
+        healthCheckScheduler.start();
 
         try {
-            CompletableFuture.allOf(deploymentResults)
+            pluginLifecycle.start(injector, startupReport, startupHealthCheck)
                     .get();
         } catch (Exception e) {
-            vertx.close();
+            // The plugins that did start may hold resources of their own, e.g. pools or servers keeping the JVM alive
+            stop(pluginLifecycle::stopStarted, injector);
             Throwables.throwIfUnchecked(e);
             throw new RuntimeException(e);
         }
 
-        log.debug("jZenith startup complete after " + stopwatch);
+        // Reports the started application without waiting for the next interval of the checks
+        healthCheckScheduler.refresh();
+
+        this.startedPlugins = pluginLifecycle;
+
+        startupReport.record(StartupReport.CORE, "total", stopwatch.elapsed());
+        startupReport.log();
+    }
+
+    /**
+     * The property above only has an effect if Log4j is not initialized yet. Otherwise (e.g. when something logged
+     * before this class was loaded) the hook of Log4j is already registered and would stop the logging in parallel
+     * to our shutdown.
+     */
+    private static void removeLog4jShutdownHook() {
+        if (LogManager.getFactory() instanceof Log4jContextFactory) {
+            final ShutdownCallbackRegistry registry =
+                    ((Log4jContextFactory) LogManager.getFactory()).getShutdownCallbackRegistry();
+            if (registry instanceof LifeCycle && ((LifeCycle) registry).isStarted()) {
+                ((LifeCycle) registry).stop();
+            }
+        }
     }
 
+    private static void shutdownAll() {
+        Runnable shutdownAction;
+        while ((shutdownAction = SHUTDOWN_ACTIONS.pollLast()) != null) {
+            try {
+                shutdownAction.run();
+            } catch (RuntimeException e) {
+                log.warn("jZenith shutdown failed", e);
+            }
+        }
+
+        // Flushes the ring buffer of the async loggers, also if the startup failed
+        LogManager.shutdown();
+    }
+
+    private void shutdown(Injector injector) {
+        final PluginLifecycle pluginLifecycle = startedPlugins;
+        if (pluginLifecycle != null) {
+            stop(pluginLifecycle::stop, injector);
+        }
+    }
+
+    private static void stop(Function<Injector, CompletableFuture<Void>> stopPlugins, Injector injector) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final Duration timeout = injector.getInstance(ShutdownConfiguration.class).getTimeout();
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        log.info("jZenith shutting down");
+
+        final HealthCheckScheduler healthCheckScheduler = injector.getInstance(HealthCheckScheduler.class);
+        injector.getInstance(StartupHealthCheck.class).shuttingDown();
+        healthCheckScheduler.refresh();
+        try {
+            stopPlugins.apply(injector).get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            healthCheckScheduler.stop();
+
+            final CompletableHandler<Void> vertxClosed = new CompletableHandler<>();
+            injector.getInstance(Vertx.class).close(vertxClosed.handler());
+            vertxClosed.get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+
+            injector.getInstance(ConfigurationSource.class).close();
+        } catch (TimeoutException e) {
+            log.warn("jZenith shutdown did not complete within {}", timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("jZenith shutdown failed", e);
+        }
+
+        log.info("jZenith shutdown complete after {}", stopwatch);
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0L, deadline - System.nanoTime());
+    }
+
+    /**
+     * Creates the injector without starting the plugins. A later {@link #run()} of this instance uses the same
+     * injector, otherwise the caller has to close the {@link Vertx} of the returned injector.
+     */
     public Injector createInjectorForTesting() {
-        return createInjector(Vertx.vertx());
+        return getOrCreateInjector();
+    }
+
+    private synchronized Injector getOrCreateInjector() {
+        if (injector == null) {
+            final Injector createdInjector = createInjector(new StartupReport(), createStartupHealthCheck());
+
+            SHUTDOWN_ACTIONS.add(() -> shutdown(createdInjector));
+            injector = createdInjector;
+        }
+        return injector;
+    }
+
+    private StartupHealthCheck createStartupHealthCheck() {
+        return new StartupHealthCheck(plugins.stream().map(AbstractPlugin::getName).collect(ImmutableList.toImmutableList()));
     }
 
-    private Injector createInjector(Vertx vertx) {
+    private Injector createInjector(StartupReport startupReport, StartupHealthCheck startupHealthCheck) {
         final Map<String,String> extraConfigurationCopy = ImmutableMap.copyOf(this.extraConfiguration);
+        final ExtraConfiguration extraConfiguration = key -> extraConfigurationCopy.get(key);
+        final ConfigurationSource configurationSource = configurationFile == null
+                ? ConfigurationSource.classpathOnly()
+                : ConfigurationSource.watching(configurationFile);
+
+        // Vert.x has to exist before the injector, so its configuration is resolved without one
+        final VertxConfiguration vertxConfiguration = new ConfigurationProvider<>(VertxConfiguration.class,
+                configuration, extraConfiguration, configurationSource).get();
+        final VertxOptions vertxOptions = createVertxOptions(vertxConfiguration);
+        final Vertx vertx = startupReport.measure(StartupReport.CORE, "vertx", () -> Vertx.vertx(vertxOptions));
+        log.info("Vert.x is using the {} transport", vertx.isNativeTransportEnabled() ? "native" : "JDK");
 
         final List<Module> allModules = ImmutableList.<Module>builder()
                 .add(new AbstractModule() {
                     @Override
                     protected void configure() {
                         bind(CoreConfiguration.class).toInstance(configuration);
-                        bind(ExtraConfiguration.class).toInstance(key -> extraConfigurationCopy.get(key));
+                        bind(ExtraConfiguration.class).toInstance(extraConfiguration);
+                        bind(ConfigurationSource.class).toInstance(configurationSource);
+                        bind(VertxConfiguration.class).toInstance(vertxConfiguration);
+                        bind(ShutdownConfiguration.class).toProvider(new ConfigurationProvider<>(ShutdownConfiguration.class)).in(Singleton.class);
+                        bind(VertxOptions.class).toInstance(vertxOptions);
+                        bind(StartupReport.class).toInstance(startupReport);
                         bind(Vertx.class).toInstance(vertx);
                         bind(io.vertx.reactivex.core.Vertx.class).toInstance(io.vertx.reactivex.core.Vertx.newInstance(vertx));
 
-                        Multibinder.newSetBinder(binder(), HealthCheck.class);
+                        bind(StartupHealthCheck.class).toInstance(startupHealthCheck);
+                        Multibinder.newSetBinder(binder(), HealthCheck.class).addBinding().toInstance(startupHealthCheck);
+                        bind(HealthCheckScheduler.class).in(Singleton.class);
                     }
                 })
                 .addAll(plugins.stream().flatMap(plugins -> plugins.getModules().stream()).collect(ImmutableList.toImmutableList()))
                 .addAll(modules)
                 .build();
 
-        return Guice.createInjector(allModules);
+        return startupReport.measure(StartupReport.CORE, "injector", () -> Guice.createInjector(allModules));
+    }
+
+    private static VertxOptions createVertxOptions(VertxConfiguration vertxConfiguration) {
+        final int eventLoopPoolSize = vertxConfiguration.getEventLoopPoolSize() > 0
+                ? vertxConfiguration.getEventLoopPoolSize()
+                : 2 * Runtime.getRuntime().availableProcessors();
+
+        final VertxOptions vertxOptions = new VertxOptions()
+                .setEventLoopPoolSize(eventLoopPoolSize)
+                .setWorkerPoolSize(vertxConfiguration.getWorkerPoolSize())
+                .setInternalBlockingPoolSize(vertxConfiguration.getInternalBlockingPoolSize())
+                .setBlockedThreadCheckInterval(vertxConfiguration.getBlockedThreadCheckInterval().toMillis())
+                .setMaxEventLoopExecuteTime(vertxConfiguration.getMaxEventLoopExecuteTime().toNanos())
+                .setMaxWorkerExecuteTime(vertxConfiguration.getMaxWorkerExecuteTime().toNanos())
+                .setWarningExceptionTime(vertxConfiguration.getWarningExceptionTime().toNanos())
+                .setPreferNativeTransport(vertxConfiguration.getPreferNativeTransport());
+
+        log.info("Starting Vert.x with {} event loops, {} worker threads and {} internal blocking threads",
+                vertxOptions.getEventLoopPoolSize(), vertxOptions.getWorkerPoolSize(), vertxOptions.getInternalBlockingPoolSize());
+
+        return vertxOptions;
     }
 
     @SafeVarargs
@@ -146,4 +313,10 @@ public class JZenith {
 
         return this;
     }
+
+    public JZenith withConfigurationFile(@NonNull Path configurationFile) {
+        this.configurationFile = configurationFile;
+
+        return this;
+    }
 }
@@ -0,0 +1,177 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.inject.Injector;
+import lombok.extern.slf4j.Slf4j;
+import org.jzenith.core.health.StartupHealthCheck;
+import org.jzenith.core.metrics.StartupReport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Starts and stops plugins in the order of their dependencies. Every plugin is started as soon as all
+ * of its dependencies are started and stopped as soon as all plugins depending on it are stopped.
+ * Plugins that do not depend on each other start and stop in parallel.
+ */
+@Slf4j
+final class PluginLifecycle {
+
+    private final List<AbstractPlugin> plugins;
+    private final Set<AbstractPlugin> startedPlugins = ConcurrentHashMap.newKeySet();
+
+    PluginLifecycle(List<AbstractPlugin> plugins) {
+        this.plugins = ImmutableList.copyOf(plugins);
+        validate();
+    }
+
+    CompletableFuture<Void> start(Injector injector, StartupReport startupReport, StartupHealthCheck startupHealthCheck) {
+        final ListMultimap<Class<? extends AbstractPlugin>, CompletableFuture<String>> started = ArrayListMultimap.create();
+        for (final AbstractPlugin plugin : inDependencyOrder()) {
+            final CompletableFuture[] dependencies = plugin.getDependencies().stream()
+                    .flatMap(dependency -> started.get(dependency).stream())
+                    .toArray(CompletableFuture[]::new);
+
+            // Plugins may block while starting, so they are never started on the thread completing a dependency
+            final CompletableFuture<String> result = CompletableFuture.allOf(dependencies)
+                    .thenComposeAsync(ignored -> startPlugin(plugin, injector, startupReport))
+                    .thenApply(message -> {
+                        startedPlugins.add(plugin);
+                        startupHealthCheck.pluginStarted(plugin.getName());
+                        return message;
+                    });
+
+            started.put(plugin.getClass(), result);
+        }
+
+        return CompletableFuture.allOf(started.values().toArray(new CompletableFuture[0]));
+    }
+
+    CompletableFuture<Void> stop(Injector injector) {
+        return stop(injector, plugin -> true);
+    }
+
+    /**
+     * Stops only the plugins that completed their start, e.g. after another plugin failed to start. Plugins
+     * that failed to start have to clean up on their own.
+     */
+    CompletableFuture<Void> stopStarted(Injector injector) {
+        return stop(injector, startedPlugins::contains);
+    }
+
+    private CompletableFuture<Void> stop(Injector injector, Predicate<AbstractPlugin> filter) {
+        final Map<AbstractPlugin, CompletableFuture<Void>> stopped = new HashMap<>();
+        for (final AbstractPlugin plugin : Lists.reverse(inDependencyOrder())) {
+            final CompletableFuture[] dependents = stopped.entrySet().stream()
+                    .filter(entry -> entry.getKey().getDependencies().contains(plugin.getClass()))
+                    .map(Map.Entry::getValue)
+                    .toArray(CompletableFuture[]::new);
+
+            stopped.put(plugin, CompletableFuture.allOf(dependents)
+                    .thenComposeAsync(ignored -> filter.test(plugin) ? stopPlugin(plugin, injector) : CompletableFuture.completedFuture(null)));
+        }
+
+        return CompletableFuture.allOf(stopped.values().toArray(new CompletableFuture[0]));
+    }
+
+    private static CompletableFuture<Void> stopPlugin(AbstractPlugin plugin, Injector injector) {
+        if (log.isDebugEnabled()) {
+            log.debug("Stopping plugin {}", plugin.getName());
+        }
+
+        final CompletableFuture<String> result;
+        try {
+            result = plugin.stop(injector);
+        } catch (RuntimeException e) {
+            log.warn("Stopping plugin {} failed", plugin.getName(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // A plugin that fails to stop must not keep the others from stopping
+        return result.handle((message, error) -> {
+            if (error != null) {
+                log.warn("Stopping plugin {} failed", plugin.getName(), error);
+            }
+            return null;
+        });
+    }
+
+    private static CompletableFuture<String> startPlugin(AbstractPlugin plugin, Injector injector, StartupReport startupReport) {
+        if (log.isDebugEnabled()) {
+            log.debug("Starting plugin {}", plugin.getName());
+        }
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        return plugin.start(injector)
+                .whenComplete((result, error) -> startupReport.record(plugin.getName(), "start", stopwatch.elapsed()));
+    }
+
+    private void validate() {
+        final Set<Class<? extends AbstractPlugin>> pluginClasses = plugins.stream()
+                .map(AbstractPlugin::getClass)
+                .collect(Collectors.toSet());
+
+        for (final AbstractPlugin plugin : plugins) {
+            for (final Class<? extends AbstractPlugin> dependency : plugin.getDependencies()) {
+                if (!pluginClasses.contains(dependency)) {
+                    throw new IllegalStateException("Plugin " + plugin.getName() + " depends on " + dependency.getName() + ", but that plugin is not registered");
+                }
+            }
+        }
+
+        inDependencyOrder();
+    }
+
+    private List<AbstractPlugin> inDependencyOrder() {
+        final List<AbstractPlugin> ordered = new ArrayList<>(plugins.size());
+        final Set<Class<? extends AbstractPlugin>> orderedClasses = new LinkedHashSet<>();
+        final List<AbstractPlugin> remaining = new ArrayList<>(plugins);
+
+        while (!remaining.isEmpty()) {
+            final List<AbstractPlugin> ready = remaining.stream()
+                    .filter(plugin -> plugin.getDependencies().stream().allMatch(dependency -> orderedClasses.contains(dependency) && !isRemaining(remaining, dependency)))
+                    .collect(Collectors.toList());
+            if (ready.isEmpty()) {
+                throw new IllegalStateException("Plugin dependencies contain a cycle between " + Joiner.on(", ").join(remaining.stream().map(AbstractPlugin::getName).iterator()));
+            }
+
+            remaining.removeAll(ready);
+            ordered.addAll(ready);
+            ready.forEach(plugin -> orderedClasses.add(plugin.getClass()));
+        }
+
+        return ordered;
+    }
+
+    private static boolean isRemaining(List<AbstractPlugin> remaining, Class<? extends AbstractPlugin> pluginClass) {
+        return remaining.stream().anyMatch(plugin -> plugin.getClass() == pluginClass);
+    }
+}
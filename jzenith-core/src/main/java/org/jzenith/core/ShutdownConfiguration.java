@@ -0,0 +1,31 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core;
+
+import org.jzenith.core.configuration.ConfigDefault;
+
+import java.time.Duration;
+
+/**
+ * The timeout bounds the whole shutdown, stopping the plugins as well as closing Vert.x. Whatever is still
+ * running afterwards is abandoned, so it should be longer than the timeouts of the plugins.
+ */
+public interface ShutdownConfiguration {
+
+    @ConfigDefault("30s")
+    Duration getTimeout();
+
+}
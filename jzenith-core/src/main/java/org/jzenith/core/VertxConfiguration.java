@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core;
+
+import org.jzenith.core.configuration.ConfigDefault;
+
+import java.time.Duration;
+
+/**
+ * Options of the Vert.x instance jZenith runs on. An event loop pool size of {@code 0} uses two event
+ * loops per processor available to the JVM, which honours container CPU limits.
+ */
+public interface VertxConfiguration {
+
+    @ConfigDefault("0")
+    int getEventLoopPoolSize();
+
+    @ConfigDefault("20")
+    int getWorkerPoolSize();
+
+    @ConfigDefault("20")
+    int getInternalBlockingPoolSize();
+
+    @ConfigDefault("1s")
+    Duration getBlockedThreadCheckInterval();
+
+    @ConfigDefault("2s")
+    Duration getMaxEventLoopExecuteTime();
+
+    @ConfigDefault("60s")
+    Duration getMaxWorkerExecuteTime();
+
+    @ConfigDefault("5s")
+    Duration getWarningExceptionTime();
+
+    @ConfigDefault("true")
+    boolean getPreferNativeTransport();
+
+}
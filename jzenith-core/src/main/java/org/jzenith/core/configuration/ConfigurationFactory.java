@@ -0,0 +1,29 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+/**
+ * Creates the implementation the {@link org.jzenith.core.configuration.processor.ConfigurationProcessor} generated
+ * for a configuration interface. The processor registers one factory per interface as a {@link java.util.ServiceLoader}
+ * service, so {@link ConfigurationProvider} can create configurations without reflection.
+ */
+public interface ConfigurationFactory<T> {
+
+    Class<T> getConfigurationClass();
+
+    T create(ConfigurationResolver resolver);
+
+}
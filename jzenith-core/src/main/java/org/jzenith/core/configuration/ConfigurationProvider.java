@@ -15,30 +15,37 @@
  */
 package org.jzenith.core.configuration;
 
-import com.google.common.base.CaseFormat;
-import com.google.common.base.Splitter;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import com.google.common.collect.ImmutableMap;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.NotImplementedException;
 import org.jzenith.core.CoreConfiguration;
-import org.jzenith.core.util.EnvironmentVariableExpander;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Properties;
-import java.util.function.Supplier;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Provides an instance of a configuration interface.
+ * <p>
+ * If the {@link org.jzenith.core.configuration.processor.ConfigurationProcessor} generated an implementation for the
+ * interface that one is created through its {@link ConfigurationFactory}, otherwise a proxy is created. Either way the instance is created and resolved once
+ * and then shared by all injections. When the {@link ConfigurationSource} publishes a new snapshot, the values
+ * of that instance are replaced.
+ */
 @Slf4j
 public class ConfigurationProvider<T> implements Provider<T> {
 
+    private static final String GENERATED_CLASS_PREFIX = "JZenith_";
+
     private final Class<T> configurationClass;
-    private final String configurationBaseNameUpper;
 
     @Inject
     private CoreConfiguration coreConfiguration;
@@ -46,149 +53,158 @@ public class ConfigurationProvider<T> implements Provider<T> {
     @Inject
     private ExtraConfiguration extraConfiguration;
 
+    @Inject
+    private ConfigurationSource configurationSource;
+
+    private volatile T instance;
+
     public ConfigurationProvider(Class<T> configurationClass) {
         this.configurationClass = configurationClass;
-        this.configurationBaseNameUpper = Splitter.on('_').split(CaseFormat.UPPER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, configurationClass.getSimpleName())).iterator().next();
+    }
+
+    /**
+     * Creates a provider outside of an injector, for configuration that is needed before the injector exists.
+     */
+    public ConfigurationProvider(Class<T> configurationClass,
+                                 CoreConfiguration coreConfiguration,
+                                 ExtraConfiguration extraConfiguration,
+                                 ConfigurationSource configurationSource) {
+        this.configurationClass = configurationClass;
+        this.coreConfiguration = coreConfiguration;
+        this.extraConfiguration = extraConfiguration;
+        this.configurationSource = configurationSource;
+    }
+
+    /**
+     * @param configurationClassName the binary name of a configuration interface
+     * @return the name of the implementation generated for that interface
+     */
+    public static String generatedClassName(String configurationClassName) {
+        final int packageEnd = configurationClassName.lastIndexOf('.');
+        final String packagePrefix = configurationClassName.substring(0, packageEnd + 1);
+        final String flatName = configurationClassName.substring(packageEnd + 1).replace('$', '_');
+
+        return packagePrefix + GENERATED_CLASS_PREFIX + flatName;
     }
 
     @Override
     public T get() {
-        return configurationClass.cast(Proxy.newProxyInstance(this.getClass().getClassLoader(),
-                    new Class[] {configurationClass},
-                    new ConfigurationInvocationHandler(configurationBaseNameUpper, coreConfiguration, extraConfiguration)));
+        T result = instance;
+        if (result == null) {
+            synchronized (this) {
+                result = instance;
+                if (result == null) {
+                    result = createInstance(createResolver());
+                    if (result instanceof ReloadableConfiguration) {
+                        final ReloadableConfiguration reloadableConfiguration = (ReloadableConfiguration) result;
+                        configurationSource.addListener(() -> reloadableConfiguration.reload(createResolver()));
+                    }
+                    instance = result;
+                }
+            }
+        }
+        return result;
     }
 
-    private static class ConfigurationInvocationHandler implements InvocationHandler {
+    private ConfigurationResolver createResolver() {
+        return new ConfigurationResolver(configurationClass, coreConfiguration, extraConfiguration, configurationSource.getSnapshot());
+    }
 
-        private final String configurationBaseNameUpper;
-        private final CoreConfiguration coreConfiguration;
-        private final ExtraConfiguration extraConfiguration;
+    private T createInstance(ConfigurationResolver resolver) {
+        final ConfigurationFactory<?> factory = GeneratedFactories.forClassLoader(configurationClass.getClassLoader()).get(configurationClass);
+        if (factory == null) {
+            log.debug("No generated implementation for {}, falling back to a proxy", configurationClass.getName());
 
-        private ConfigurationInvocationHandler(String configurationBaseNameUpper,
-                                              CoreConfiguration coreConfiguration,
-                                              ExtraConfiguration extraConfiguration) {
-            this.configurationBaseNameUpper = configurationBaseNameUpper;
-            this.coreConfiguration = coreConfiguration;
-            this.extraConfiguration = extraConfiguration;
+            return createProxy(resolver);
         }
 
-        @Override
-        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            final String configurationName = method.getName().replace("get", "");
-            final String environmentVariableName = configurationBaseNameUpper + "_" + CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, configurationName);
-            final String configurationNameCommandLine = "--" + CaseFormat.UPPER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, environmentVariableName);
-            final String configurationPropertyName = configurationBaseNameUpper.toLowerCase() + "." + CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, configurationName).replace('_', '.');
-
-            final String value = firstNonNull(
-                    () -> logValue(extraConfigurationValue(configurationPropertyName), configurationPropertyName, configurationPropertyName, "code"),
-                    () -> logValue(commandLineArgument(configurationNameCommandLine), configurationPropertyName, configurationNameCommandLine, "command line"),
-                    () -> logValue(environmentConfiguration(environmentVariableName), configurationPropertyName, environmentVariableName, "environment"),
-                    () -> logValue(propertyConfiguration(configurationBaseNameUpper.toLowerCase(), configurationPropertyName), configurationPropertyName, configurationPropertyName, "property file"),
-                    () -> logValue(defaultConfiguration(method), configurationPropertyName, method.getName(), "default annotation"));
-
-            final String expandedValue;
-            if (value.startsWith("$")) {
-                expandedValue = EnvironmentVariableExpander.expand(value);
-            } else if (value.startsWith("\\")) {
-                expandedValue = value.substring(1);
-            } else {
-                expandedValue = value;
-            }
+        return configurationClass.cast(factory.create(resolver));
+    }
 
-            final Class<?> returnType = method.getReturnType();
-            if (returnType == int.class) {
-                return Integer.parseInt(expandedValue);
-            }
-            if (returnType == String.class) {
-                return expandedValue;
-            }
+    private T createProxy(ConfigurationResolver resolver) {
+        return configurationClass.cast(Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                    new Class[] {configurationClass, ReloadableConfiguration.class},
+                    new ConfigurationInvocationHandler(configurationClass, resolver)));
+    }
 
-            throw new NotImplementedException("No support for configuration of type " + returnType.getName());
-        }
+    private static class ConfigurationInvocationHandler implements InvocationHandler {
 
-        private String logValue(String value, String propertyName, String lookupName, String from) {
-            if (value != null) {
-                log.info("Using value '" + value + "' for property " + propertyName + " obtained from " + from + " (" + lookupName + ")");
-            }
-            return value;
-        }
+        private final Class<?> configurationClass;
+        private volatile ImmutableMap<Method, Object> values;
 
-        private String extraConfigurationValue(String key) {
-            return extraConfiguration.getValue(key);
+        private ConfigurationInvocationHandler(Class<?> configurationClass, ConfigurationResolver resolver) {
+            this.configurationClass = configurationClass;
+            this.values = resolveValues(resolver);
         }
 
-        private String defaultConfiguration(Method method) {
-            final ConfigDefault annotation = method.getAnnotation(ConfigDefault.class);
-            if (annotation == null) {
-                throw new IllegalStateException("Method " + method.getName() + " of type " + method.getDeclaringClass().getName() + " does not have a @ConfigDefault annotation");
+        private ImmutableMap<Method, Object> resolveValues(ConfigurationResolver resolver) {
+            final ImmutableMap.Builder<Method, Object> builder = ImmutableMap.builder();
+            for (final Method method : configurationClass.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers()) || method.isDefault()) {
+                    continue;
+                }
+
+                final ConfigDefault annotation = method.getAnnotation(ConfigDefault.class);
+                builder.put(method, resolver.resolve(method.getName(), method.getGenericReturnType(), annotation == null ? null : annotation.value()));
             }
 
-            return annotation.value();
+            return builder.build();
         }
 
-        @SuppressFBWarnings(value = "OBL_UNSATISFIED_OBLIGATION", justification = "Wrong positive on unclosed stream")
-        private String propertyConfiguration(String configurationBaseNameLower, String propertyName) {
-            try {
-                try (final InputStream specificStream = this.getClass().getResourceAsStream("/" + configurationBaseNameLower + ".properties")) {
-                    if (specificStream != null) {
-                        return loadPropertyFrom(specificStream, configurationBaseNameLower + "." + propertyName);
-                    }
-                }
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(this, args);
+            }
+            if (method.getDeclaringClass() == ReloadableConfiguration.class) {
+                values = resolveValues((ConfigurationResolver) args[0]);
+                return null;
+            }
 
-                try (final InputStream globalStream = this.getClass().getResourceAsStream("/jzenith.properties")) {
-                    if (globalStream != null) {
-                        return loadPropertyFrom(globalStream, configurationBaseNameLower + "." + propertyName);
-                    }
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            final Object value = values.get(method);
+            if (value == null) {
+                throw new IllegalStateException("No configuration value resolved for method " + method.getName() + " of type " + method.getDeclaringClass().getName());
             }
 
-            return null;
+            return value;
         }
 
-        private String loadPropertyFrom(InputStream inputStream, String propertyName) {
-            final Properties p = new Properties();
-            try {
-                p.load(inputStream);
+        @Override
+        public String toString() {
+            return values.toString();
+        }
+    }
 
-                if (p.containsKey(propertyName)) {
-                    return p.getProperty(propertyName);
-                }
+    /**
+     * The generated factories registered in {@code META-INF/services}, loaded once per class loader.
+     */
+    private static class GeneratedFactories {
 
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            return null;
-        }
+        private static final Map<ClassLoader, ImmutableMap<Class<?>, ConfigurationFactory<?>>> FACTORIES = new ConcurrentHashMap<>();
 
-        private String environmentConfiguration(String environmentVariableName) {
-            return System.getenv(environmentVariableName);
+        private static ImmutableMap<Class<?>, ConfigurationFactory<?>> forClassLoader(ClassLoader classLoader) {
+            final ClassLoader loader = classLoader == null ? ClassLoader.getSystemClassLoader() : classLoader;
+            return FACTORIES.computeIfAbsent(loader, GeneratedFactories::load);
         }
 
-        private String commandLineArgument(String configurationName) {
-            final Iterator<String> iterator = coreConfiguration.getCommandLineArguments().iterator();
-            while (iterator.hasNext()) {
-                if (configurationName.equals(iterator.next())) {
+        @SuppressWarnings("rawtypes")
+        private static ImmutableMap<Class<?>, ConfigurationFactory<?>> load(ClassLoader classLoader) {
+            final Map<Class<?>, ConfigurationFactory<?>> factories = new HashMap<>();
+            final Iterator<ConfigurationFactory> iterator = ServiceLoader.load(ConfigurationFactory.class, classLoader).iterator();
+            while (true) {
+                try {
                     if (!iterator.hasNext()) {
-                        throw new IllegalStateException("Command line argument " + configurationName + " should have a value");
+                        break;
                     }
-                    return iterator.next();
-                }
-            }
-            return null;
-        }
-
-        @SafeVarargs
-        private static String firstNonNull(Supplier<String>... suppliers) {
-            for (final Supplier<String> supplier : suppliers) {
-                final String s = supplier.get();
-                if (s != null) {
-                    return s;
+                    final ConfigurationFactory<?> factory = iterator.next();
+                    factories.put(factory.getConfigurationClass(), factory);
+                } catch (ServiceConfigurationError e) {
+                    // e.g. a stale entry of an interface that no longer exists, the others are still usable
+                    log.warn("Can not load a generated configuration factory", e);
                 }
             }
 
-            throw new IllegalStateException("Non of the provided suppliers supplied a value");
+            return ImmutableMap.copyOf(factories);
         }
     }
 }
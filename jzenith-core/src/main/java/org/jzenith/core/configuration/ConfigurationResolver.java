@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.base.Splitter;
+import lombok.extern.slf4j.Slf4j;
+import org.jzenith.core.CoreConfiguration;
+import org.jzenith.core.util.EnvironmentVariableExpander;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Resolves single configuration values of a configuration interface from all configuration sources.
+ * <p>
+ * Resolving is expensive (name mangling, environment access), so the result is meant
+ * to be computed once and cached by the caller, see {@link ConfigurationProvider}. Implementations
+ * generated by the {@link org.jzenith.core.configuration.processor.ConfigurationProcessor} call it from their constructor.
+ */
+@Slf4j
+public class ConfigurationResolver {
+
+    private final Class<?> configurationClass;
+    private final String configurationBaseNameUpper;
+    private final CoreConfiguration coreConfiguration;
+    private final ExtraConfiguration extraConfiguration;
+    private final ConfigurationSnapshot snapshot;
+
+    ConfigurationResolver(Class<?> configurationClass,
+                          CoreConfiguration coreConfiguration,
+                          ExtraConfiguration extraConfiguration,
+                          ConfigurationSnapshot snapshot) {
+        this.configurationClass = configurationClass;
+        this.configurationBaseNameUpper = Splitter.on('_').split(CaseFormat.UPPER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, configurationClass.getSimpleName())).iterator().next();
+        this.coreConfiguration = coreConfiguration;
+        this.extraConfiguration = extraConfiguration;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return the type of a configuration method returning a {@code List} of {@code elementType}
+     */
+    public static Type listOf(Class<?> elementType) {
+        return ValueConverter.listOf(elementType);
+    }
+
+    public Object resolve(String methodName, Type returnType, @Nullable String defaultValue) {
+        final String configurationName = methodName.replace("get", "");
+        final String environmentVariableName = configurationBaseNameUpper + "_" + CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, configurationName);
+        final String configurationNameCommandLine = "--" + CaseFormat.UPPER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, environmentVariableName);
+        final String configurationPropertyName = configurationBaseNameUpper.toLowerCase() + "." + CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, configurationName).replace('_', '.');
+
+        final String value = firstNonNull(
+                () -> logValue(extraConfigurationValue(configurationPropertyName), configurationPropertyName, configurationPropertyName, "code"),
+                () -> logValue(commandLineArgument(configurationNameCommandLine), configurationPropertyName, configurationNameCommandLine, "command line"),
+                () -> logValue(environmentConfiguration(environmentVariableName), configurationPropertyName, environmentVariableName, "environment"),
+                () -> logValue(propertyConfiguration(configurationBaseNameUpper.toLowerCase(), configurationPropertyName), configurationPropertyName, configurationPropertyName, "property file"),
+                () -> logValue(defaultConfiguration(methodName, defaultValue), configurationPropertyName, methodName, "default annotation"));
+
+        final String expandedValue;
+        if (value.startsWith("$")) {
+            expandedValue = EnvironmentVariableExpander.expand(value);
+        } else if (value.startsWith("\\")) {
+            expandedValue = value.substring(1);
+        } else {
+            expandedValue = value;
+        }
+
+        try {
+            return ValueConverter.convert(expandedValue, returnType);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw new IllegalArgumentException("Can not convert value '" + expandedValue + "' of property " + configurationPropertyName
+                    + " to " + returnType.getTypeName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String logValue(String value, String propertyName, String lookupName, String from) {
+        if (value != null) {
+            log.info("Using value '" + value + "' for property " + propertyName + " obtained from " + from + " (" + lookupName + ")");
+        }
+        return value;
+    }
+
+    private String extraConfigurationValue(String key) {
+        return extraConfiguration.getValue(key);
+    }
+
+    private String defaultConfiguration(String methodName, @Nullable String defaultValue) {
+        if (defaultValue == null) {
+            throw new IllegalStateException("Method " + methodName + " of type " + configurationClass.getName() + " does not have a @ConfigDefault annotation");
+        }
+
+        return defaultValue;
+    }
+
+    private String propertyConfiguration(String configurationBaseNameLower, String propertyName) {
+        return snapshot.getProperty(configurationBaseNameLower, propertyName);
+    }
+
+    private String environmentConfiguration(String environmentVariableName) {
+        return System.getenv(environmentVariableName);
+    }
+
+    private String commandLineArgument(String configurationName) {
+        final Iterator<String> iterator = coreConfiguration.getCommandLineArguments().iterator();
+        while (iterator.hasNext()) {
+            if (configurationName.equals(iterator.next())) {
+                if (!iterator.hasNext()) {
+                    throw new IllegalStateException("Command line argument " + configurationName + " should have a value");
+                }
+                return iterator.next();
+            }
+        }
+        return null;
+    }
+
+    @SafeVarargs
+    private static String firstNonNull(Supplier<String>... suppliers) {
+        for (final Supplier<String> supplier : suppliers) {
+            final String s = supplier.get();
+            if (s != null) {
+                return s;
+            }
+        }
+
+        throw new IllegalStateException("Non of the provided suppliers supplied a value");
+    }
+}
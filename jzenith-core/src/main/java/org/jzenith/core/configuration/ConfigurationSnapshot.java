@@ -0,0 +1,123 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable view on all property files at one point in time.
+ * <p>
+ * Values are looked up in the external configuration file first (if any), then in the per plugin property file
+ * on the class path (e.g. {@code rest.properties}) and last in {@code jzenith.properties}. Class path resources
+ * never change at runtime, so they are parsed once and shared between all snapshots.
+ */
+@Slf4j
+public final class ConfigurationSnapshot {
+
+    private static final String GLOBAL_PROPERTIES = "/jzenith.properties";
+
+    private static final ConcurrentMap<String, ImmutableMap<String, String>> CLASSPATH_PROPERTIES = new ConcurrentHashMap<>();
+
+    private final ImmutableMap<String, String> externalProperties;
+
+    private ConfigurationSnapshot(ImmutableMap<String, String> externalProperties) {
+        this.externalProperties = externalProperties;
+    }
+
+    public static ConfigurationSnapshot empty() {
+        return new ConfigurationSnapshot(ImmutableMap.of());
+    }
+
+    public static ConfigurationSnapshot load(@Nullable Path externalFile) {
+        if (externalFile == null || !Files.isRegularFile(externalFile)) {
+            return empty();
+        }
+
+        try {
+            return loadExisting(externalFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Can not load configuration from " + externalFile, e);
+        }
+    }
+
+    /**
+     * Like {@link #load(Path)}, but fails instead of falling back to an empty snapshot if the file is missing.
+     */
+    static ConfigurationSnapshot loadExisting(Path externalFile) throws IOException {
+        try (final InputStream inputStream = Files.newInputStream(externalFile)) {
+            log.info("Loading configuration from {}", externalFile);
+            return new ConfigurationSnapshot(loadProperties(inputStream));
+        }
+    }
+
+    /**
+     * @return true if both snapshots hold the same values of the external configuration file
+     */
+    boolean hasSameExternalProperties(ConfigurationSnapshot other) {
+        return externalProperties.equals(other.externalProperties);
+    }
+
+    @Nullable
+    public String getProperty(String configurationBaseNameLower, String propertyName) {
+        final String externalValue = externalProperties.get(propertyName);
+        if (externalValue != null) {
+            return externalValue;
+        }
+
+        final String specificValue = classpathProperties("/" + configurationBaseNameLower + ".properties").get(propertyName);
+        if (specificValue != null) {
+            return specificValue;
+        }
+
+        return classpathProperties(GLOBAL_PROPERTIES).get(propertyName);
+    }
+
+    private static ImmutableMap<String, String> classpathProperties(String resourceName) {
+        return CLASSPATH_PROPERTIES.computeIfAbsent(resourceName, ConfigurationSnapshot::loadClasspathProperties);
+    }
+
+    @SuppressFBWarnings(value = "OBL_UNSATISFIED_OBLIGATION", justification = "Wrong positive on unclosed stream")
+    private static ImmutableMap<String, String> loadClasspathProperties(String resourceName) {
+        try (final InputStream inputStream = ConfigurationSnapshot.class.getResourceAsStream(resourceName)) {
+            if (inputStream == null) {
+                return ImmutableMap.of();
+            }
+
+            return loadProperties(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ImmutableMap<String, String> loadProperties(InputStream inputStream) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(inputStream);
+
+        return ImmutableMap.copyOf(Maps.fromProperties(properties));
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link ConfigurationSnapshot}.
+ * <p>
+ * If an external configuration file is given, the file is watched and a new snapshot is published atomically
+ * whenever its content changes. Listeners are notified after the new snapshot has been published.
+ * <p>
+ * Changes are only read once the directory of the file was quiet for a moment and the file did not change while it
+ * was read, so a file that is still being written is not published. A missing or unreadable file keeps the current
+ * snapshot, editors that save by replacing the file and symlink swaps like those of Kubernetes ConfigMaps do not
+ * reset the configuration to its defaults in between.
+ */
+@Slf4j
+public class ConfigurationSource implements Closeable {
+
+    private static final Duration SETTLE_TIME = Duration.ofMillis(500);
+    private static final int MAX_READ_ATTEMPTS = 5;
+
+    private final AtomicReference<ConfigurationSnapshot> snapshot;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    @Nullable
+    private final Path externalFile;
+
+    @Nullable
+    private final WatchService watchService;
+
+    private final Duration settleTime;
+
+    private ConfigurationSource(@Nullable Path externalFile, @Nullable WatchService watchService, Duration settleTime) {
+        this.externalFile = externalFile;
+        this.watchService = watchService;
+        this.settleTime = settleTime;
+        this.snapshot = new AtomicReference<>(ConfigurationSnapshot.load(externalFile));
+    }
+
+    public static ConfigurationSource classpathOnly() {
+        return new ConfigurationSource(null, null, SETTLE_TIME);
+    }
+
+    public static ConfigurationSource watching(@NonNull Path externalFile) {
+        return watching(externalFile, SETTLE_TIME);
+    }
+
+    static ConfigurationSource watching(Path externalFile, Duration settleTime) {
+        final Path absoluteFile = externalFile.toAbsolutePath();
+        final WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            register(watchService, absoluteFile.getParent());
+            // A symlinked file changes in the directory of its target
+            if (Files.exists(absoluteFile)) {
+                final Path realDirectory = absoluteFile.toRealPath().getParent();
+                if (!realDirectory.equals(absoluteFile.getParent().toRealPath())) {
+                    register(watchService, realDirectory);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can not watch configuration file " + absoluteFile, e);
+        }
+
+        final ConfigurationSource source = new ConfigurationSource(absoluteFile, watchService, settleTime);
+
+        final Thread watcherThread = new Thread(source::watch, "jzenith-configuration-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+
+        return source;
+    }
+
+    private static void register(WatchService watchService, Path directory) throws IOException {
+        directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    public ConfigurationSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    public void addListener(@NonNull Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                // Every event of the directory counts, a symlink swap renames other entries than the file itself.
+                // Reloads that do not change anything are not published.
+                consumeEvents(watchService.take());
+
+                // Writers and swaps produce several events, wait until they are done
+                WatchKey key;
+                while ((key = watchService.poll(settleTime.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    consumeEvents(key);
+                }
+
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Stopped watching configuration file {}", externalFile);
+        }
+    }
+
+    private static void consumeEvents(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    private void reload() throws InterruptedException {
+        final ConfigurationSnapshot newSnapshot;
+        try {
+            newSnapshot = readWhenStable();
+        } catch (NoSuchFileException e) {
+            log.warn("Configuration file {} is missing, keeping the current configuration", externalFile);
+            return;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Can not reload configuration file {}, keeping the current configuration", externalFile, e);
+            return;
+        }
+
+        if (newSnapshot.hasSameExternalProperties(snapshot.get())) {
+            return;
+        }
+
+        snapshot.set(newSnapshot);
+        log.info("Configuration file {} changed, reloading configuration", externalFile);
+
+        for (final Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.warn("Configuration listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Reads the file until its modification time and size did not change while it was read.
+     */
+    private ConfigurationSnapshot readWhenStable() throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            final BasicFileAttributes before = Files.readAttributes(externalFile, BasicFileAttributes.class);
+            final ConfigurationSnapshot newSnapshot = ConfigurationSnapshot.loadExisting(externalFile);
+            final BasicFileAttributes after = Files.readAttributes(externalFile, BasicFileAttributes.class);
+
+            if (before.lastModifiedTime().equals(after.lastModifiedTime()) && before.size() == after.size()) {
+                return newSnapshot;
+            }
+            if (attempt == MAX_READ_ATTEMPTS) {
+                throw new IOException("The file is still being written");
+            }
+
+            Thread.sleep(settleTime.toMillis());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import com.google.common.base.Ascii;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A number of bytes, e.g. a buffer or cache size. Configuration values like {@code 512}, {@code 64KB},
+ * {@code 16MB} or {@code 1GiB} are supported, units are based on 1024.
+ */
+@EqualsAndHashCode
+public final class DataSize implements Comparable<DataSize> {
+
+    private static final Pattern PATTERN = Pattern.compile("^\\s*(\\d+)\\s*([a-zA-Z]*)\\s*$");
+
+    private static final long KILO = 1024L;
+
+    private final long bytes;
+
+    private DataSize(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public static DataSize ofBytes(long bytes) {
+        return new DataSize(bytes);
+    }
+
+    public static DataSize ofKilobytes(long kilobytes) {
+        return new DataSize(Math.multiplyExact(kilobytes, KILO));
+    }
+
+    public static DataSize ofMegabytes(long megabytes) {
+        return new DataSize(Math.multiplyExact(megabytes, KILO * KILO));
+    }
+
+    public static DataSize parse(@NonNull String value) {
+        final Matcher matcher = PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("'" + value + "' is not a valid data size");
+        }
+
+        final long amount = Long.parseLong(matcher.group(1));
+        switch (Ascii.toUpperCase(matcher.group(2))) {
+            case "":
+            case "B":
+                return ofBytes(amount);
+            case "K":
+            case "KB":
+            case "KIB":
+                return ofKilobytes(amount);
+            case "M":
+            case "MB":
+            case "MIB":
+                return ofMegabytes(amount);
+            case "G":
+            case "GB":
+            case "GIB":
+                return new DataSize(Math.multiplyExact(amount, KILO * KILO * KILO));
+            case "T":
+            case "TB":
+            case "TIB":
+                return new DataSize(Math.multiplyExact(amount, KILO * KILO * KILO * KILO));
+            default:
+                throw new IllegalArgumentException("Unknown data size unit '" + matcher.group(2) + "' in '" + value + "'");
+        }
+    }
+
+    public long toBytes() {
+        return bytes;
+    }
+
+    public long toKilobytes() {
+        return bytes / KILO;
+    }
+
+    public long toMegabytes() {
+        return bytes / (KILO * KILO);
+    }
+
+    /**
+     * @return the size in bytes as int, for APIs that only take int sizes
+     * @throws ArithmeticException if the size does not fit into an int
+     */
+    public int toIntBytes() {
+        return Math.toIntExact(bytes);
+    }
+
+    @Override
+    public int compareTo(DataSize other) {
+        return Long.compare(bytes, other.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return bytes + "B";
+    }
+}
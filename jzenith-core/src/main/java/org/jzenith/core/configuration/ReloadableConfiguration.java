@@ -13,12 +13,14 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.jzenith.example.helloworld.persistence.model;
+package org.jzenith.core.configuration;
 
-public enum Updated {
-    YES, NO;
+/**
+ * Implemented by configuration instances that can pick up changed values without being recreated,
+ * see {@link ConfigurationSource}.
+ */
+public interface ReloadableConfiguration {
+
+    void reload(ConfigurationResolver resolver);
 
-    public static boolean isUpdated(Updated updated) {
-        return updated == YES;
-    }
 }
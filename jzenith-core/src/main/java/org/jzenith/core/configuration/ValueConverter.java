@@ -0,0 +1,239 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Converts configuration values from their string form to the type of the configuration method.
+ */
+final class ValueConverter {
+
+    private static final Splitter LIST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private static final Pattern DURATION_PATTERN = Pattern.compile("^\\s*(-?\\d+)\\s*([a-zA-Z]*)\\s*$");
+
+    private ValueConverter() {
+    }
+
+    static Type listOf(Class<?> elementType) {
+        return new ListType(elementType);
+    }
+
+    static Object convert(String value, Type type) {
+        if (type instanceof Class) {
+            return convertScalar(value, (Class<?>) type);
+        }
+
+        if (type instanceof ParameterizedType) {
+            final ParameterizedType parameterizedType = (ParameterizedType) type;
+            final Type[] typeArguments = parameterizedType.getActualTypeArguments();
+            if (parameterizedType.getRawType() == List.class && typeArguments.length == 1 && typeArguments[0] instanceof Class) {
+                final Class<?> elementType = (Class<?>) typeArguments[0];
+
+                return LIST_SPLITTER.splitToList(value).stream()
+                        .map(element -> convertScalar(element, elementType))
+                        .collect(ImmutableList.toImmutableList());
+            }
+        }
+
+        throw new IllegalArgumentException("No support for configuration of type " + type.getTypeName());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object convertScalar(String value, Class<?> type) {
+        final Class<?> wrappedType = Primitives.wrap(type);
+
+        if (wrappedType == String.class) {
+            return value;
+        }
+        if (wrappedType == Integer.class) {
+            return Integer.parseInt(value.trim());
+        }
+        if (wrappedType == Long.class) {
+            return Long.parseLong(value.trim());
+        }
+        if (wrappedType == Boolean.class) {
+            return parseBoolean(value);
+        }
+        if (wrappedType == Double.class) {
+            return Double.parseDouble(value.trim());
+        }
+        if (wrappedType == Float.class) {
+            return Float.parseFloat(value.trim());
+        }
+        if (wrappedType == Short.class) {
+            return Short.parseShort(value.trim());
+        }
+        if (wrappedType == Byte.class) {
+            return Byte.parseByte(value.trim());
+        }
+        if (wrappedType == Character.class) {
+            if (value.length() != 1) {
+                throw new IllegalArgumentException("'" + value + "' is not a single character");
+            }
+            return value.charAt(0);
+        }
+        if (wrappedType == Duration.class) {
+            return parseDuration(value);
+        }
+        if (wrappedType == DataSize.class) {
+            return DataSize.parse(value);
+        }
+        if (wrappedType.isEnum()) {
+            return parseEnum(value, wrappedType);
+        }
+
+        throw new IllegalArgumentException("No support for configuration of type " + type.getName());
+    }
+
+    private static Object parseEnum(String value, Class<?> enumType) {
+        final String name = value.trim().replace('-', '_');
+        final Object[] constants = enumType.getEnumConstants();
+        // An exact match wins, constants may only differ in case
+        for (Object constant : constants) {
+            if (((Enum<?>) constant).name().equals(name)) {
+                return constant;
+            }
+        }
+        for (Object constant : constants) {
+            if (((Enum<?>) constant).name().equalsIgnoreCase(name)) {
+                return constant;
+            }
+        }
+
+        throw new IllegalArgumentException("'" + value + "' is not a constant of " + enumType.getName());
+    }
+
+    private static boolean parseBoolean(String value) {
+        switch (Ascii.toLowerCase(value.trim())) {
+            case "true":
+            case "yes":
+            case "on":
+            case "1":
+                return true;
+            case "false":
+            case "no":
+            case "off":
+            case "0":
+                return false;
+            default:
+                throw new IllegalArgumentException("'" + value + "' is not a valid boolean");
+        }
+    }
+
+    /**
+     * Supports ISO-8601 durations ({@code PT5S}) as well as a number followed by a unit ({@code 500ms}, {@code 5s},
+     * {@code 2m}, {@code 1h}, {@code 1d}). A number without unit is taken as milliseconds.
+     */
+    private static Duration parseDuration(String value) {
+        final String trimmedValue = value.trim();
+        if (trimmedValue.startsWith("P") || trimmedValue.startsWith("-P")) {
+            try {
+                return Duration.parse(trimmedValue);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("'" + value + "' is not a valid duration", e);
+            }
+        }
+
+        final Matcher matcher = DURATION_PATTERN.matcher(trimmedValue);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("'" + value + "' is not a valid duration");
+        }
+
+        final long amount = Long.parseLong(matcher.group(1));
+        switch (Ascii.toLowerCase(matcher.group(2))) {
+            case "ns":
+                return Duration.ofNanos(amount);
+            case "us":
+                return Duration.of(amount, ChronoUnit.MICROS);
+            case "":
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                throw new IllegalArgumentException("Unknown duration unit '" + matcher.group(2) + "' in '" + value + "'");
+        }
+    }
+
+    private static final class ListType implements ParameterizedType {
+
+        private final Class<?> elementType;
+
+        private ListType(Class<?> elementType) {
+            this.elementType = elementType;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return new Type[] {elementType};
+        }
+
+        @Override
+        public Type getRawType() {
+            return List.class;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ParameterizedType)) {
+                return false;
+            }
+
+            final ParameterizedType that = (ParameterizedType) other;
+            return that.getRawType() == List.class
+                    && that.getOwnerType() == null
+                    && that.getActualTypeArguments().length == 1
+                    && Objects.equals(that.getActualTypeArguments()[0], elementType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(getActualTypeArguments()) ^ List.class.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return List.class.getName() + "<" + elementType.getName() + ">";
+        }
+    }
+}
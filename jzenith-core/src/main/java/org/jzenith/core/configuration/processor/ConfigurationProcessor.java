@@ -0,0 +1,251 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration.processor;
+
+import com.google.common.collect.ImmutableSet;
+import org.jzenith.core.configuration.ConfigDefault;
+import org.jzenith.core.configuration.ConfigurationFactory;
+import org.jzenith.core.configuration.ConfigurationProvider;
+import org.jzenith.core.configuration.ConfigurationResolver;
+import org.jzenith.core.configuration.ReloadableConfiguration;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Generates a plain implementation for every configuration interface that uses {@link ConfigDefault}.
+ * <p>
+ * The generated class resolves all values once in its constructor and keeps them in fields, so that
+ * {@link ConfigurationProvider} does not need to fall back to a reflective proxy. A reload replaces all
+ * values at once.
+ * <p>
+ * Every generated class comes with a {@link ConfigurationFactory} that is registered in
+ * {@code META-INF/services}, so the implementations are created without reflection, also in native images.
+ */
+public class ConfigurationProcessor extends AbstractProcessor {
+
+    private static final String SERVICE_FILE = "META-INF/services/" + ConfigurationFactory.class.getName();
+
+    private final Set<String> factories = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return ImmutableSet.of(ConfigDefault.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final Set<TypeElement> configurationInterfaces = new LinkedHashSet<>();
+        for (final Element element : roundEnv.getElementsAnnotatedWith(ConfigDefault.class)) {
+            final Element enclosingElement = element.getEnclosingElement();
+            if (element.getKind() != ElementKind.METHOD || enclosingElement.getKind() != ElementKind.INTERFACE) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@ConfigDefault is only supported on methods of interfaces", element);
+                continue;
+            }
+
+            configurationInterfaces.add((TypeElement) enclosingElement);
+        }
+
+        configurationInterfaces.forEach(this::generate);
+
+        if (roundEnv.processingOver() && !factories.isEmpty()) {
+            writeServiceFile();
+        }
+
+        return false;
+    }
+
+    private void writeServiceFile() {
+        // Keep the factories of an earlier, incremental compilation of the same module
+        final Set<String> allFactories = new TreeSet<>(factories);
+        try {
+            final FileObject existingFile = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (final Reader reader = existingFile.openReader(true); final BufferedReader lines = new BufferedReader(reader)) {
+                lines.lines()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty())
+                        .forEach(allFactories::add);
+            }
+        } catch (IOException e) {
+            // No service file yet
+        }
+
+        try {
+            final FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (final Writer writer = serviceFile.openWriter(); final PrintWriter out = new PrintWriter(writer)) {
+                allFactories.forEach(out::println);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Can not write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private void generate(TypeElement configurationInterface) {
+        final String packageName = processingEnv.getElementUtils().getPackageOf(configurationInterface).getQualifiedName().toString();
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(configurationInterface).toString();
+        final String generatedName = ConfigurationProvider.generatedClassName(binaryName);
+        final String generatedSimpleName = generatedName.substring(generatedName.lastIndexOf('.') + 1);
+        final List<ExecutableElement> methods = configurationMethods(configurationInterface);
+
+        try {
+            final JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(generatedName, configurationInterface);
+            try (final Writer writer = sourceFile.openWriter(); final PrintWriter out = new PrintWriter(writer)) {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("@javax.annotation.processing.Generated(\"" + ConfigurationProcessor.class.getName() + "\")");
+                out.println("public final class " + generatedSimpleName + " implements " + configurationInterface.getQualifiedName() + ", " + ReloadableConfiguration.class.getName() + " {");
+                out.println();
+                out.println("    private volatile Values values;");
+                out.println();
+                out.println("    public " + generatedSimpleName + "(" + ConfigurationResolver.class.getName() + " resolver) {");
+                out.println("        this.values = new Values(resolver);");
+                out.println("    }");
+                out.println();
+                out.println("    @java.lang.Override");
+                out.println("    public void reload(" + ConfigurationResolver.class.getName() + " resolver) {");
+                out.println("        this.values = new Values(resolver);");
+                out.println("    }");
+                for (final ExecutableElement method : methods) {
+                    out.println();
+                    out.println("    @java.lang.Override");
+                    out.println("    public " + method.getReturnType() + " " + method.getSimpleName() + "() {");
+                    out.println("        return values." + method.getSimpleName() + ";");
+                    out.println("    }");
+                }
+                out.println();
+                out.println("    @java.lang.Override");
+                out.println("    public java.lang.String toString() {");
+                out.println("        final Values current = values;");
+                out.println("        return \"" + configurationInterface.getSimpleName() + "{\" + "
+                        + methods.stream()
+                            .map(method -> "\"" + method.getSimpleName() + "=\" + current." + method.getSimpleName())
+                            .collect(Collectors.joining(" + \", \" + "))
+                        + (methods.isEmpty() ? "" : " + ") + "\"}\";");
+                out.println("    }");
+                out.println();
+                out.println("    public static final class Factory implements " + ConfigurationFactory.class.getName() + "<" + configurationInterface.getQualifiedName() + "> {");
+                out.println();
+                out.println("        @java.lang.Override");
+                out.println("        public java.lang.Class<" + configurationInterface.getQualifiedName() + "> getConfigurationClass() {");
+                out.println("            return " + configurationInterface.getQualifiedName() + ".class;");
+                out.println("        }");
+                out.println();
+                out.println("        @java.lang.Override");
+                out.println("        public " + configurationInterface.getQualifiedName() + " create(" + ConfigurationResolver.class.getName() + " resolver) {");
+                out.println("            return new " + generatedSimpleName + "(resolver);");
+                out.println("        }");
+                out.println("    }");
+                out.println();
+                out.println("    private static final class Values {");
+                out.println();
+                for (final ExecutableElement method : methods) {
+                    out.println("        private final " + method.getReturnType() + " " + method.getSimpleName() + ";");
+                }
+                out.println();
+                out.println("        @java.lang.SuppressWarnings(\"unchecked\")");
+                out.println("        private Values(" + ConfigurationResolver.class.getName() + " resolver) {");
+                for (final ExecutableElement method : methods) {
+                    out.println("            this." + method.getSimpleName() + " = (" + boxedType(method.getReturnType()) + ") resolver.resolve("
+                            + literal(method.getSimpleName().toString()) + ", "
+                            + typeLiteral(method) + ", "
+                            + defaultValue(method) + ");");
+                }
+                out.println("        }");
+                out.println("    }");
+                out.println("}");
+            }
+            factories.add(generatedName + "$Factory");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Can not generate configuration " + generatedName + ": " + e.getMessage(), configurationInterface);
+        }
+    }
+
+    private List<ExecutableElement> configurationMethods(TypeElement configurationInterface) {
+        return ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(configurationInterface)).stream()
+                .filter(method -> method.getModifiers().contains(Modifier.ABSTRACT))
+                .filter(method -> method.getEnclosingElement().getKind() == ElementKind.INTERFACE)
+                .filter(method -> method.getParameters().isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private String boxedType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind())).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    private String typeLiteral(ExecutableElement method) {
+        final TypeMirror type = method.getReturnType();
+        if (type.getKind() != TypeKind.DECLARED) {
+            return type + ".class";
+        }
+
+        final DeclaredType declaredType = (DeclaredType) type;
+        final String rawType = processingEnv.getTypeUtils().erasure(type).toString();
+        if (declaredType.getTypeArguments().isEmpty()) {
+            return rawType + ".class";
+        }
+
+        final List<? extends TypeMirror> typeArguments = declaredType.getTypeArguments();
+        if (!List.class.getName().equals(rawType) || typeArguments.size() != 1 || typeArguments.get(0).getKind() != TypeKind.DECLARED) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Configuration values of type " + type + " are not supported", method);
+            return "null";
+        }
+
+        return ConfigurationResolver.class.getName() + ".listOf(" + processingEnv.getTypeUtils().erasure(typeArguments.get(0)) + ".class)";
+    }
+
+    private static String defaultValue(ExecutableElement method) {
+        final ConfigDefault annotation = method.getAnnotation(ConfigDefault.class);
+        return annotation == null ? "null" : literal(annotation.value());
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
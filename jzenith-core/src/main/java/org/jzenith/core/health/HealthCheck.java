@@ -15,17 +15,79 @@
  */
 package org.jzenith.core.health;
 
+import com.google.common.collect.ImmutableSet;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
 import io.reactivex.Single;
+import io.reactivex.subjects.SingleSubject;
 
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class HealthCheck {
 
+    private static final Histogram CHECK_DURATION = Histogram.build()
+            .name("jzenith_health_check_duration_seconds")
+            .help("Duration of the health check executions in seconds.")
+            .labelNames("check")
+            .buckets(0.001D, 0.005D, 0.01D, 0.05D, 0.1D, 0.5D, 1.0D, 2.5D, 5.0D, 10.0D)
+            .register();
+
+    private static final Counter CHECK_OUTCOMES = Counter.build()
+            .name("jzenith_health_check_total")
+            .help("Health check executions by outcome (up, down, timeout or error).")
+            .labelNames("check", "outcome")
+            .register();
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000D;
+
+    private final AtomicReference<SingleSubject<HealthCheckResult>> inProgress = new AtomicReference<>();
+
+    /**
+     * Executes the check, concurrent callers share the execution in progress instead of starting another one.
+     */
     public Single<HealthCheckResult> execute() {
-        return executeInternal().timeout(getTimeout(), getTimeoutUnit())
+        return Single.defer(() -> {
+            while (true) {
+                final SingleSubject<HealthCheckResult> running = inProgress.get();
+                if (running != null) {
+                    return running;
+                }
+
+                final SingleSubject<HealthCheckResult> execution = SingleSubject.create();
+                if (inProgress.compareAndSet(null, execution)) {
+                    executeMeasured().subscribe((result, error) -> {
+                        inProgress.compareAndSet(execution, null);
+                        if (error != null) {
+                            execution.onError(error);
+                        } else {
+                            execution.onSuccess(result);
+                        }
+                    });
+                    return execution;
+                }
+            }
+        });
+    }
+
+    private Single<HealthCheckResult> executeMeasured() {
+        final String name = getName();
+        final long startTime = System.nanoTime();
+
+        return Single.defer(this::executeInternal)
+                .timeout(getTimeout(), getTimeoutUnit())
+                .doOnSuccess(result -> recordExecution(name, startTime, result.isDown() ? "down" : "up"))
+                .doOnError(error -> recordExecution(name, startTime, error instanceof TimeoutException ? "timeout" : "error"))
                 .onErrorResumeNext(error -> Single.just(createResult(error)));
     }
 
+    private static void recordExecution(String name, long startTime, String outcome) {
+        CHECK_DURATION.labels(name).observe((System.nanoTime() - startTime) / NANOS_PER_SECOND);
+        CHECK_OUTCOMES.labels(name, outcome).inc();
+    }
+
     protected HealthCheckResult createResult(Throwable error) {
         return HealthCheckResult.create(error, getName());
     }
@@ -40,6 +102,13 @@ public abstract class HealthCheck {
         return getClass().getSimpleName();
     }
 
+    /**
+     * @return the probes this check contributes to, {@link HealthCheckGroup#READINESS} by default
+     */
+    public Set<HealthCheckGroup> getGroups() {
+        return ImmutableSet.of(HealthCheckGroup.READINESS);
+    }
+
     public long getTimeout() {
         return 5;
     }
@@ -47,4 +116,27 @@ public abstract class HealthCheck {
     public TimeUnit getTimeoutUnit() {
         return TimeUnit.SECONDS;
     }
+
+    /**
+     * @return the pause between two executions by the {@link HealthCheckScheduler}
+     */
+    public long getInterval() {
+        return 10;
+    }
+
+    public TimeUnit getIntervalUnit() {
+        return TimeUnit.SECONDS;
+    }
+
+    /**
+     * @return the age after which the last result is no longer trusted and the check reports {@link HealthState#DOWN},
+     * three intervals by default
+     */
+    public long getStalenessThreshold() {
+        return 3 * getInterval();
+    }
+
+    public TimeUnit getStalenessThresholdUnit() {
+        return getIntervalUnit();
+    }
 }
@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.health;
+
+/**
+ * The probes a {@link HealthCheck} contributes to.
+ */
+public enum HealthCheckGroup {
+    /**
+     * Whether the process works at all, failing it gets the application restarted. Checks of this group must
+     * not depend on external resources.
+     */
+    LIVENESS,
+    /**
+     * Whether the application can serve traffic, e.g. its database is reachable.
+     */
+    READINESS,
+    /**
+     * Whether the application has finished starting.
+     */
+    STARTUP;
+}
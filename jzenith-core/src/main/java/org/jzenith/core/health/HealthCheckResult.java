@@ -16,11 +16,16 @@
 package org.jzenith.core.health;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import com.google.common.base.MoreObjects;
 import lombok.*;
 
+import java.time.Duration;
+import java.time.Instant;
+
 @Getter
-@Builder
+@Builder(toBuilder = true)
 public class HealthCheckResult {
 
     @NonNull
@@ -31,6 +36,18 @@ public class HealthCheckResult {
 
     private final String message;
 
+    /**
+     * When the check completed, only set for results of the {@link HealthCheckScheduler}
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final Instant checkedAt;
+
+    /**
+     * How long the check took, only set for results of the {@link HealthCheckScheduler}
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final Duration duration;
+
     public static HealthCheckResult create(boolean up, @NonNull String name) {
         return HealthCheckResult.builder().state(up ? HealthState.UP : HealthState.DOWN).healtCheckName(name).build();
     }
@@ -39,6 +56,10 @@ public class HealthCheckResult {
         return HealthCheckResult.builder().state(HealthState.DOWN).message(MoreObjects.firstNonNull(error.getMessage(), error.getClass().getSimpleName())).healtCheckName(name).build();
     }
 
+    public HealthCheckResult checked(@NonNull Instant checkedAt, @NonNull Duration duration) {
+        return toBuilder().checkedAt(checkedAt).duration(duration).build();
+    }
+
     @JsonIgnore
     public boolean isDown() {
         return this.state == HealthState.DOWN;
@@ -0,0 +1,194 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.health;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.vertx.core.Vertx;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs every {@link HealthCheck} in the background on its own interval and keeps the latest result.
+ * <p>
+ * Health endpoints read the kept results instead of executing the checks, so the number of probes does
+ * not multiply the load on e.g. the database. A result older than the staleness threshold of its check
+ * is reported as {@link HealthState#DOWN}, so a hanging scheduler does not report the application as healthy.
+ */
+@Slf4j
+public class HealthCheckScheduler {
+
+    private static final long NO_TIMER = -1L;
+
+    private final Vertx vertx;
+    private final Clock clock;
+    private final List<ScheduledHealthCheck> scheduledHealthChecks;
+    private volatile boolean stopped;
+
+    @Inject
+    public HealthCheckScheduler(Vertx vertx, Set<HealthCheck> healthChecks) {
+        this(vertx, healthChecks, Clock.systemUTC());
+    }
+
+    HealthCheckScheduler(Vertx vertx, Set<HealthCheck> healthChecks, Clock clock) {
+        this.vertx = vertx;
+        this.clock = clock;
+        this.scheduledHealthChecks = healthChecks.stream()
+                .map(ScheduledHealthCheck::new)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    public void start() {
+        log.debug("Scheduling {} health checks", scheduledHealthChecks.size());
+        refresh();
+    }
+
+    /**
+     * Executes all checks now instead of waiting for their next interval, e.g. after the application state changed.
+     */
+    public void refresh() {
+        scheduledHealthChecks.forEach(ScheduledHealthCheck::run);
+    }
+
+    public void stop() {
+        stopped = true;
+        scheduledHealthChecks.forEach(ScheduledHealthCheck::cancel);
+    }
+
+    /**
+     * @return the latest result of every check, results that are missing or stale are {@link HealthState#DOWN}
+     */
+    public List<HealthCheckResult> getResults() {
+        final Instant now = clock.instant();
+        return scheduledHealthChecks.stream()
+                .map(scheduledHealthCheck -> scheduledHealthCheck.currentResult(now))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * @return the latest result of every check of the group, see {@link #getResults()}
+     */
+    public List<HealthCheckResult> getResults(@NonNull HealthCheckGroup group) {
+        final Instant now = clock.instant();
+        return scheduledHealthChecks.stream()
+                .filter(scheduledHealthCheck -> scheduledHealthCheck.groups.contains(group))
+                .map(scheduledHealthCheck -> scheduledHealthCheck.currentResult(now))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private final class ScheduledHealthCheck {
+
+        private final HealthCheck healthCheck;
+        private final Set<HealthCheckGroup> groups;
+        private final Duration interval;
+        private final Duration stalenessThreshold;
+        private volatile HealthCheckResult result;
+
+        // guarded by this, there is at most one execution and at most one timer at a time
+        private boolean running;
+        private boolean rerun;
+        private long timerId = NO_TIMER;
+
+        private ScheduledHealthCheck(HealthCheck healthCheck) {
+            this.healthCheck = healthCheck;
+            this.groups = ImmutableSet.copyOf(healthCheck.getGroups());
+            this.interval = Duration.ofNanos(healthCheck.getIntervalUnit().toNanos(healthCheck.getInterval()));
+            this.stalenessThreshold = Duration.ofNanos(healthCheck.getStalenessThresholdUnit().toNanos(healthCheck.getStalenessThreshold()));
+        }
+
+        private void run() {
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                if (running) {
+                    // The running execution might have started before the state changed, run again once it is done
+                    rerun = true;
+                    return;
+                }
+                running = true;
+                cancel();
+            }
+
+            final long startTime = System.nanoTime();
+            healthCheck.execute()
+                    .onErrorReturn(healthCheck::createResult)
+                    .subscribe(checkResult -> completed(checkResult.checked(clock.instant(), Duration.ofNanos(System.nanoTime() - startTime))));
+        }
+
+        private void completed(HealthCheckResult checkResult) {
+            result = checkResult;
+
+            final boolean runAgain;
+            synchronized (this) {
+                running = false;
+                runAgain = rerun;
+                rerun = false;
+                if (!runAgain && !stopped) {
+                    timerId = vertx.setTimer(Math.max(1L, interval.toMillis()), this::timerFired);
+                }
+            }
+
+            if (runAgain) {
+                run();
+            }
+        }
+
+        private void timerFired(long firedTimerId) {
+            synchronized (this) {
+                // A timer that fired while being cancelled must not start another execution
+                if (firedTimerId != timerId) {
+                    return;
+                }
+                timerId = NO_TIMER;
+            }
+            run();
+        }
+
+        private synchronized void cancel() {
+            if (timerId != NO_TIMER) {
+                vertx.cancelTimer(timerId);
+                timerId = NO_TIMER;
+            }
+        }
+
+        private HealthCheckResult currentResult(Instant now) {
+            final HealthCheckResult currentResult = result;
+            if (currentResult == null) {
+                return HealthCheckResult.builder()
+                        .state(HealthState.DOWN)
+                        .message("Not checked yet")
+                        .healtCheckName(healthCheck.getName())
+                        .build();
+            }
+            if (currentResult.getCheckedAt().plus(stalenessThreshold).isBefore(now)) {
+                return currentResult.toBuilder()
+                        .state(HealthState.DOWN)
+                        .message("Last checked at " + currentResult.getCheckedAt() + ", the result is stale")
+                        .build();
+            }
+
+            return currentResult;
+        }
+    }
+}
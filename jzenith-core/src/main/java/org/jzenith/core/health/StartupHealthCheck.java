@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.health;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import io.reactivex.Single;
+import lombok.NonNull;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports {@link HealthState#DOWN} until all plugins of the application have been started and again
+ * once the application shuts down, so that the application only receives traffic while it is ready.
+ */
+public class StartupHealthCheck extends HealthCheck {
+
+    private final Set<String> pendingPlugins = ConcurrentHashMap.newKeySet();
+    private volatile boolean shuttingDown;
+
+    public StartupHealthCheck(@NonNull Collection<String> pluginNames) {
+        this.pendingPlugins.addAll(pluginNames);
+    }
+
+    public void pluginStarted(@NonNull String pluginName) {
+        pendingPlugins.remove(pluginName);
+    }
+
+    public void shuttingDown() {
+        shuttingDown = true;
+    }
+
+    public boolean isStarted() {
+        return pendingPlugins.isEmpty();
+    }
+
+    @Override
+    public Set<HealthCheckGroup> getGroups() {
+        return ImmutableSet.of(HealthCheckGroup.STARTUP, HealthCheckGroup.READINESS);
+    }
+
+    @Override
+    protected Single<HealthCheckResult> executeInternal() {
+        if (shuttingDown) {
+            return Single.just(HealthCheckResult.builder()
+                    .state(HealthState.DOWN)
+                    .message("Shutting down")
+                    .healtCheckName(getName())
+                    .build());
+        }
+        if (isStarted()) {
+            return Single.just(createResult(true));
+        }
+
+        return Single.just(HealthCheckResult.builder()
+                .state(HealthState.DOWN)
+                .message("Waiting for plugins " + Joiner.on(", ").join(pendingPlugins) + " to start")
+                .healtCheckName(getName())
+                .build());
+    }
+}
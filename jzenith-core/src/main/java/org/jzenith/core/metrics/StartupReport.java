@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.metrics;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import io.prometheus.client.Gauge;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Records how long the single phases of the startup took, per plugin. Every phase is exported as
+ * {@code jzenith_startup_phase_seconds{phase,plugin}} and the whole report is logged once startup is complete.
+ */
+@Slf4j
+public class StartupReport {
+
+    public static final String CORE = "core";
+
+    private static final Gauge STARTUP_PHASE_SECONDS = Gauge.build()
+            .name("jzenith_startup_phase_seconds")
+            .help("Duration of the startup phases in seconds.")
+            .labelNames("phase", "plugin")
+            .register();
+
+    private final ConcurrentLinkedQueue<Phase> phases = new ConcurrentLinkedQueue<>();
+
+    public void record(@NonNull String plugin, @NonNull String phase, @NonNull Duration duration) {
+        phases.add(new Phase(plugin, phase, duration));
+        STARTUP_PHASE_SECONDS.labels(phase, plugin).set(duration.toNanos() / 1e9D);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Startup phase {} of {} took {} ms", phase, plugin, duration.toMillis());
+        }
+    }
+
+    public <T> T measure(@NonNull String plugin, @NonNull String phase, @NonNull Supplier<T> supplier) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            return supplier.get();
+        } finally {
+            record(plugin, phase, stopwatch.elapsed());
+        }
+    }
+
+    public void measure(@NonNull String plugin, @NonNull String phase, @NonNull Runnable runnable) {
+        measure(plugin, phase, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    public List<Phase> getPhases() {
+        return ImmutableList.copyOf(phases);
+    }
+
+    public void log() {
+        log.info("jZenith startup report:\n{}", phases.stream()
+                .map(phase -> String.format("  %-12s %-24s %8d ms", phase.getPlugin(), phase.getPhase(), phase.getDuration().toMillis()))
+                .collect(Collectors.joining("\n")));
+    }
+
+    @Value
+    public static class Phase {
+        private final String plugin;
+        private final String phase;
+        private final Duration duration;
+    }
+}
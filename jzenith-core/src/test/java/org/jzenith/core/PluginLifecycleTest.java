@@ -0,0 +1,286 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.After;
+import org.junit.Test;
+import org.jzenith.core.health.StartupHealthCheck;
+import org.jzenith.core.metrics.StartupReport;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PluginLifecycleTest {
+
+    private final Injector injector = Guice.createInjector();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStartsDependenciesFirst() throws Exception {
+        final List<AbstractPlugin> plugins = ImmutableList.of(new WebPlugin(events), new CachePlugin(events), new DatabasePlugin(events));
+
+        start(plugins).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ImmutableList.of("start database", "start cache", "start web"), events);
+    }
+
+    @Test
+    public void testWaitsForDependencyToComplete() throws Exception {
+        final DatabasePlugin database = new DatabasePlugin(events);
+        database.result = new CompletableFuture<>();
+        final CachePlugin cache = new CachePlugin(events);
+
+        final CompletableFuture<Void> started = start(ImmutableList.of(cache, database));
+        database.started.await(5, TimeUnit.SECONDS);
+        Thread.sleep(100);
+
+        assertEquals(ImmutableList.of("start database"), events);
+        assertFalse(started.isDone());
+
+        database.result.complete("Done");
+        started.get(5, TimeUnit.SECONDS);
+
+        assertEquals(ImmutableList.of("start database", "start cache"), events);
+    }
+
+    @Test
+    public void testStartsIndependentPluginsInParallel() throws Exception {
+        final DatabasePlugin database = new DatabasePlugin(events);
+        final MetricsPlugin metrics = new MetricsPlugin(events);
+        // Only completes once the other plugin started, which never happens if the plugins were started one after the other
+        database.result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return metrics.started.await(5, TimeUnit.SECONDS) ? "Done" : "Timeout";
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, executor);
+        metrics.result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return database.started.await(5, TimeUnit.SECONDS) ? "Done" : "Timeout";
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, executor);
+
+        start(ImmutableList.of(database, metrics)).get(5, TimeUnit.SECONDS);
+
+        assertEquals("Done", database.result.get());
+        assertEquals("Done", metrics.result.get());
+    }
+
+    @Test
+    public void testReportsStartedPlugins() throws Exception {
+        final List<AbstractPlugin> plugins = ImmutableList.of(new CachePlugin(events), new DatabasePlugin(events));
+        final StartupHealthCheck startupHealthCheck = new StartupHealthCheck(ImmutableList.of("cache", "database"));
+
+        new PluginLifecycle(plugins).start(injector, new StartupReport(), startupHealthCheck).get(5, TimeUnit.SECONDS);
+
+        assertTrue(startupHealthCheck.isStarted());
+    }
+
+    @Test
+    public void testFailsIfPluginFailsToStart() throws Exception {
+        final DatabasePlugin database = new DatabasePlugin(events);
+        database.result = new CompletableFuture<>();
+        database.result.completeExceptionally(new IllegalStateException("No connection"));
+
+        try {
+            start(ImmutableList.of(database, new CachePlugin(events))).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), containsString("No connection"));
+        }
+        assertEquals(ImmutableList.of("start database"), events);
+    }
+
+    @Test
+    public void testStopsStartedPluginsAfterFailedStart() throws Exception {
+        final MetricsPlugin metrics = new MetricsPlugin(events);
+        metrics.result = new CompletableFuture<>();
+        metrics.result.completeExceptionally(new IllegalStateException("Port in use"));
+        final PluginLifecycle pluginLifecycle = new PluginLifecycle(ImmutableList.of(new DatabasePlugin(events), new CachePlugin(events), metrics));
+
+        try {
+            pluginLifecycle.start(injector, new StartupReport(), new StartupHealthCheck(ImmutableList.of())).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), containsString("Port in use"));
+        }
+        events.clear();
+
+        pluginLifecycle.stopStarted(injector).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ImmutableList.of("stop cache", "stop database"), events);
+    }
+
+    @Test
+    public void testDoesNotStopPluginsThatDidNotStart() throws Exception {
+        final DatabasePlugin database = new DatabasePlugin(events);
+        database.result = new CompletableFuture<>();
+        database.result.completeExceptionally(new IllegalStateException("No connection"));
+        final PluginLifecycle pluginLifecycle = new PluginLifecycle(ImmutableList.of(database, new CachePlugin(events), new MetricsPlugin(events)));
+
+        try {
+            pluginLifecycle.start(injector, new StartupReport(), new StartupHealthCheck(ImmutableList.of())).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), containsString("No connection"));
+        }
+        events.clear();
+
+        pluginLifecycle.stopStarted(injector).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ImmutableList.of("stop metrics"), events);
+    }
+
+    @Test
+    public void testStopsInReverseDependencyOrder() throws Exception {
+        final List<AbstractPlugin> plugins = ImmutableList.of(new DatabasePlugin(events), new WebPlugin(events), new CachePlugin(events));
+
+        new PluginLifecycle(plugins).stop(injector).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ImmutableList.of("stop web", "stop cache", "stop database"), events);
+    }
+
+    @Test
+    public void testStopContinuesAfterFailure() throws Exception {
+        final CachePlugin cache = new CachePlugin(events);
+        cache.stopFailure = new IllegalStateException("Stop failed");
+
+        new PluginLifecycle(ImmutableList.of(new DatabasePlugin(events), cache)).stop(injector).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ImmutableList.of("stop cache", "stop database"), events);
+    }
+
+    @Test
+    public void testMissingDependency() {
+        try {
+            new PluginLifecycle(ImmutableList.of(new CachePlugin(events)));
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString(DatabasePlugin.class.getName()));
+            assertThat(e.getMessage(), containsString("not registered"));
+        }
+    }
+
+    @Test
+    public void testCycle() {
+        try {
+            new PluginLifecycle(ImmutableList.of(new DatabasePlugin(events), new ChickenPlugin(events), new EggPlugin(events)));
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("cycle"));
+            assertThat(e.getMessage(), containsString("chicken"));
+            assertThat(e.getMessage(), containsString("egg"));
+        }
+    }
+
+    private CompletableFuture<Void> start(List<AbstractPlugin> plugins) {
+        final StartupHealthCheck startupHealthCheck = new StartupHealthCheck(ImmutableList.of());
+        return new PluginLifecycle(plugins).start(injector, new StartupReport(), startupHealthCheck);
+    }
+
+    private abstract static class TestPlugin extends AbstractPlugin {
+
+        private final List<String> events;
+        final CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> result = CompletableFuture.completedFuture("Done");
+        RuntimeException stopFailure;
+
+        TestPlugin(List<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        protected CompletableFuture<String> start(Injector injector) {
+            events.add("start " + getName());
+            started.countDown();
+            return result;
+        }
+
+        @Override
+        protected CompletableFuture<String> stop(Injector injector) {
+            events.add("stop " + getName());
+            if (stopFailure != null) {
+                throw stopFailure;
+            }
+            return CompletableFuture.completedFuture("Done");
+        }
+    }
+
+    private static class DatabasePlugin extends TestPlugin {
+        DatabasePlugin(List<String> events) {
+            super(events);
+        }
+    }
+
+    private static class MetricsPlugin extends TestPlugin {
+        MetricsPlugin(List<String> events) {
+            super(events);
+        }
+    }
+
+    private static class CachePlugin extends TestPlugin {
+        CachePlugin(List<String> events) {
+            super(events);
+            addDependencies(DatabasePlugin.class);
+        }
+    }
+
+    private static class WebPlugin extends TestPlugin {
+        WebPlugin(List<String> events) {
+            super(events);
+            addDependencies(CachePlugin.class, DatabasePlugin.class);
+        }
+    }
+
+    private static class ChickenPlugin extends TestPlugin {
+        ChickenPlugin(List<String> events) {
+            super(events);
+            addDependencies(EggPlugin.class);
+        }
+    }
+
+    private static class EggPlugin extends TestPlugin {
+        EggPlugin(List<String> events) {
+            super(events);
+            addDependencies(ChickenPlugin.class, DatabasePlugin.class);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.jzenith.core.CoreConfiguration;
+import org.jzenith.core.JZenith_VertxConfiguration;
+import org.jzenith.core.VertxConfiguration;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationProviderTest {
+
+    private final CoreConfiguration coreConfiguration = ImmutableList::of;
+
+    @Test
+    public void testUsesGeneratedImplementation() {
+        final VertxConfiguration configuration = provider(key -> null).get();
+
+        assertTrue(configuration instanceof JZenith_VertxConfiguration);
+    }
+
+    @Test
+    public void testResolvesValuesOnce() {
+        final ConfigurationProvider<VertxConfiguration> provider = provider(key -> "vertx.worker.pool.size".equals(key) ? "7" : null);
+
+        final VertxConfiguration configuration = provider.get();
+
+        assertEquals(7, configuration.getWorkerPoolSize());
+        assertEquals(Duration.ofSeconds(2), configuration.getMaxEventLoopExecuteTime());
+        assertSame(configuration, provider.get());
+    }
+
+    private ConfigurationProvider<VertxConfiguration> provider(ExtraConfiguration extraConfiguration) {
+        return new ConfigurationProvider<>(VertxConfiguration.class, coreConfiguration, extraConfiguration, ConfigurationSource.classpathOnly());
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConfigurationResolverTest {
+
+    private interface TestConfiguration {
+    }
+
+    @Test
+    public void testResolvesExtraConfiguration() {
+        assertEquals(Duration.ofSeconds(3), resolver("test.timeout", "3s").resolve("getTimeout", Duration.class, "1s"));
+    }
+
+    @Test
+    public void testResolvesDefault() {
+        assertEquals(Duration.ofSeconds(1), resolver("test.other", "3s").resolve("getTimeout", Duration.class, "1s"));
+    }
+
+    @Test
+    public void testInvalidValueNamesPropertyAndType() {
+        try {
+            resolver("test.timeout", "soon").resolve("getTimeout", Duration.class, "1s");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("test.timeout"));
+            assertThat(e.getMessage(), containsString(Duration.class.getName()));
+        }
+    }
+
+    @Test
+    public void testOverflowNamesPropertyAndType() {
+        try {
+            resolver("test.buffer.size", "9000000000TB").resolve("getBufferSize", DataSize.class, "1KB");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("test.buffer.size"));
+            assertThat(e.getMessage(), containsString(DataSize.class.getName()));
+        }
+    }
+
+    @Test
+    public void testUnsupportedTypeNamesPropertyAndType() {
+        final Type type = new TypeToken<Set<String>>() {}.getType();
+        try {
+            resolver("test.names", "a, b").resolve("getNames", type, "a");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("test.names"));
+            assertThat(e.getMessage(), containsString(type.getTypeName()));
+        }
+    }
+
+    private static ConfigurationResolver resolver(String key, String value) {
+        return new ConfigurationResolver(TestConfiguration.class, ImmutableList::of, name -> key.equals(name) ? value : null,
+                ConfigurationSource.classpathOnly().getSnapshot());
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationSourceTest {
+
+    private static final Duration SETTLE_TIME = Duration.ofMillis(50);
+    private static final long QUIET_MILLIS = 500;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ConfigurationSource source;
+
+    @After
+    public void closeSource() throws IOException {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    @Test
+    public void testMissingFileStartsEmpty() throws Exception {
+        source = ConfigurationSource.watching(folder.getRoot().toPath().resolve("missing.properties"), SETTLE_TIME);
+
+        assertNull(value());
+    }
+
+    @Test
+    public void testReloadsOnChange() throws Exception {
+        final Path file = write(folder.getRoot().toPath().resolve("test.properties"), "1");
+        source = ConfigurationSource.watching(file, SETTLE_TIME);
+        final AtomicInteger notifications = new AtomicInteger();
+        source.addListener(notifications::incrementAndGet);
+        assertEquals("1", value());
+
+        write(file, "2");
+
+        await(() -> "2".equals(value()));
+        await(() -> notifications.get() == 1);
+    }
+
+    @Test
+    public void testIgnoresUnchangedContent() throws Exception {
+        final Path file = write(folder.getRoot().toPath().resolve("test.properties"), "1");
+        source = ConfigurationSource.watching(file, SETTLE_TIME);
+        final AtomicInteger notifications = new AtomicInteger();
+        source.addListener(notifications::incrementAndGet);
+
+        write(file, "1");
+        Thread.sleep(QUIET_MILLIS);
+
+        assertEquals(0, notifications.get());
+    }
+
+    @Test
+    public void testKeepsSnapshotWhileFileIsMissing() throws Exception {
+        final Path file = write(folder.getRoot().toPath().resolve("test.properties"), "1");
+        source = ConfigurationSource.watching(file, SETTLE_TIME);
+        final AtomicInteger notifications = new AtomicInteger();
+        source.addListener(notifications::incrementAndGet);
+
+        Files.delete(file);
+        Thread.sleep(QUIET_MILLIS);
+
+        assertEquals("1", value());
+        assertEquals(0, notifications.get());
+
+        write(file, "2");
+        await(() -> "2".equals(value()));
+        await(() -> notifications.get() == 1);
+    }
+
+    @Test
+    public void testFollowsSymlinkSwap() throws Exception {
+        // The layout of a mounted Kubernetes ConfigMap
+        final Path directory = folder.getRoot().toPath();
+        write(Files.createDirectory(directory.resolve("..v1")).resolve("test.properties"), "1");
+        write(Files.createDirectory(directory.resolve("..v2")).resolve("test.properties"), "2");
+        Files.createSymbolicLink(directory.resolve("..data"), directory.resolve("..v1").getFileName());
+        final Path file = Files.createSymbolicLink(directory.resolve("test.properties"), directory.getFileSystem().getPath("..data", "test.properties"));
+        source = ConfigurationSource.watching(file, SETTLE_TIME);
+        assertEquals("1", value());
+
+        final Path newData = Files.createSymbolicLink(directory.resolve("..data_tmp"), directory.resolve("..v2").getFileName());
+        Files.move(newData, directory.resolve("..data"), StandardCopyOption.ATOMIC_MOVE);
+
+        await(() -> "2".equals(value()));
+    }
+
+    @Test
+    public void testFailingListenerDoesNotStopOthers() throws Exception {
+        final Path file = write(folder.getRoot().toPath().resolve("test.properties"), "1");
+        source = ConfigurationSource.watching(file, SETTLE_TIME);
+        final AtomicInteger notifications = new AtomicInteger();
+        source.addListener(() -> {
+            throw new IllegalStateException("Listener failed");
+        });
+        source.addListener(notifications::incrementAndGet);
+
+        write(file, "2");
+
+        await(() -> notifications.get() == 1);
+        assertEquals("2", value());
+    }
+
+    @Test
+    public void testCloseStopsWatching() throws Exception {
+        final Path file = write(folder.getRoot().toPath().resolve("test.properties"), "1");
+        source = ConfigurationSource.watching(file, SETTLE_TIME);
+
+        source.close();
+        write(file, "2");
+        Thread.sleep(QUIET_MILLIS);
+
+        assertEquals("1", value());
+    }
+
+    private String value() {
+        return source.getSnapshot().getProperty("test", "test.value");
+    }
+
+    private static Path write(Path file, String value) throws IOException {
+        return Files.write(file, ("test.value=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.configuration;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class ValueConverterTest {
+
+    private enum Mode {
+        READ_ONLY,
+        READ_WRITE
+    }
+
+    private enum Level {
+        low,
+        Medium,
+        HIGH_load
+    }
+
+    @Test
+    public void testDuration() {
+        assertEquals(Duration.ofMillis(500), ValueConverter.convert("500ms", Duration.class));
+        assertEquals(Duration.ofMillis(250), ValueConverter.convert("250", Duration.class));
+        assertEquals(Duration.ofSeconds(5), ValueConverter.convert(" 5 s ", Duration.class));
+        assertEquals(Duration.ofMinutes(2), ValueConverter.convert("2m", Duration.class));
+        assertEquals(Duration.ofHours(1), ValueConverter.convert("1H", Duration.class));
+        assertEquals(Duration.ofDays(1), ValueConverter.convert("1d", Duration.class));
+        assertEquals(Duration.ofNanos(-10), ValueConverter.convert("-10ns", Duration.class));
+        assertEquals(Duration.ofSeconds(30), ValueConverter.convert("PT30S", Duration.class));
+        assertEquals(Duration.ofSeconds(-30), ValueConverter.convert("-PT30S", Duration.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDurationUnknownUnit() {
+        ValueConverter.convert("5y", Duration.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDurationInvalid() {
+        ValueConverter.convert("five seconds", Duration.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDurationInvalidIso() {
+        ValueConverter.convert("PT5X", Duration.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDurationAmountOverflow() {
+        ValueConverter.convert("99999999999999999999s", Duration.class);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDurationUnitOverflow() {
+        ValueConverter.convert("200000000000000d", Duration.class);
+    }
+
+    @Test
+    public void testDataSize() {
+        assertEquals(DataSize.ofBytes(512), ValueConverter.convert("512", DataSize.class));
+        assertEquals(DataSize.ofBytes(512), ValueConverter.convert("512B", DataSize.class));
+        assertEquals(DataSize.ofKilobytes(64), ValueConverter.convert("64KB", DataSize.class));
+        assertEquals(DataSize.ofKilobytes(64), ValueConverter.convert("64kib", DataSize.class));
+        assertEquals(DataSize.ofMegabytes(16), ValueConverter.convert(" 16 MB ", DataSize.class));
+        assertEquals(DataSize.ofMegabytes(2048), ValueConverter.convert("2G", DataSize.class));
+        assertEquals(1024L * 1024 * 1024 * 1024, ((DataSize) ValueConverter.convert("1TB", DataSize.class)).toBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDataSizeNegative() {
+        ValueConverter.convert("-1KB", DataSize.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDataSizeUnknownUnit() {
+        ValueConverter.convert("1PB", DataSize.class);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDataSizeOverflow() {
+        ValueConverter.convert("9000000000TB", DataSize.class);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDataSizeToIntBytesOverflow() {
+        ((DataSize) ValueConverter.convert("2GB", DataSize.class)).toIntBytes();
+    }
+
+    @Test
+    public void testEnum() {
+        assertEquals(Mode.READ_ONLY, ValueConverter.convert("READ_ONLY", Mode.class));
+        assertEquals(Mode.READ_ONLY, ValueConverter.convert("read_only", Mode.class));
+        assertEquals(Mode.READ_WRITE, ValueConverter.convert(" read-write ", Mode.class));
+    }
+
+    @Test
+    public void testEnumWithLowerAndMixedCaseConstants() {
+        assertEquals(Level.low, ValueConverter.convert("low", Level.class));
+        assertEquals(Level.low, ValueConverter.convert("LOW", Level.class));
+        assertEquals(Level.Medium, ValueConverter.convert("medium", Level.class));
+        assertEquals(Level.Medium, ValueConverter.convert("Medium", Level.class));
+        assertEquals(Level.HIGH_load, ValueConverter.convert("high-load", Level.class));
+        assertEquals(Level.HIGH_load, ValueConverter.convert("HIGH_load", Level.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEnumUnknownConstant() {
+        ValueConverter.convert("write-only", Mode.class);
+    }
+
+    @Test
+    public void testList() {
+        assertEquals(ImmutableList.of(1, 2, 3), ValueConverter.convert("1, 2,,3 ", ValueConverter.listOf(Integer.class)));
+        assertEquals(ImmutableList.of("a", "b"), ValueConverter.convert("a,b", ValueConverter.listOf(String.class)));
+        assertEquals(ImmutableList.of(Duration.ofSeconds(1), Duration.ofMillis(5)), ValueConverter.convert("1s, 5ms", ValueConverter.listOf(Duration.class)));
+        assertEquals(ImmutableList.of(Mode.READ_ONLY, Mode.READ_WRITE), ValueConverter.convert("read-only, READ_WRITE", ValueConverter.listOf(Mode.class)));
+        assertEquals(ImmutableList.of(), ValueConverter.convert("", ValueConverter.listOf(Integer.class)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testListInvalidElement() {
+        ValueConverter.convert("1, two", ValueConverter.listOf(Integer.class));
+    }
+
+    @Test
+    public void testBoolean() {
+        assertEquals(true, ValueConverter.convert("yes", boolean.class));
+        assertEquals(false, ValueConverter.convert("OFF", Boolean.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBooleanInvalid() {
+        ValueConverter.convert("maybe", boolean.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedType() {
+        ValueConverter.convert("value", Object.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedParameterizedType() {
+        ValueConverter.convert("value", new TypeToken<Set<String>>() {}.getType());
+    }
+}
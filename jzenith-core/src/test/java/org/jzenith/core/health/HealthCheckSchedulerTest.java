@@ -0,0 +1,213 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.health;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.reactivex.Single;
+import io.reactivex.subjects.SingleSubject;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class HealthCheckSchedulerTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final MutableClock clock = new MutableClock(Instant.parse("2018-10-01T10:00:00Z"));
+
+    @After
+    public void closeVertx() {
+        vertx.close();
+    }
+
+    @Test
+    public void testNotCheckedYet() {
+        final HealthCheckScheduler scheduler = scheduler(new TestHealthCheck("Database", HealthCheckGroup.READINESS));
+
+        final HealthCheckResult result = scheduler.getResults().get(0);
+
+        assertEquals(HealthState.DOWN, result.getState());
+        assertEquals("Not checked yet", result.getMessage());
+    }
+
+    @Test
+    public void testStaleResultIsDown() {
+        final TestHealthCheck healthCheck = new TestHealthCheck("Database", HealthCheckGroup.READINESS);
+        final HealthCheckScheduler scheduler = scheduler(healthCheck);
+        scheduler.start();
+        healthCheck.complete(0, true);
+
+        assertEquals(HealthState.UP, scheduler.getResults().get(0).getState());
+
+        // The staleness threshold is three intervals of an hour
+        clock.advance(Duration.ofHours(3));
+        assertEquals(HealthState.UP, scheduler.getResults().get(0).getState());
+
+        clock.advance(Duration.ofSeconds(1));
+        final HealthCheckResult result = scheduler.getResults().get(0);
+        assertEquals(HealthState.DOWN, result.getState());
+        assertThat(result.getMessage(), containsString("stale"));
+        assertEquals("Database", result.getHealtCheckName());
+    }
+
+    @Test
+    public void testGroupFiltering() {
+        final TestHealthCheck liveness = new TestHealthCheck("Liveness", HealthCheckGroup.LIVENESS);
+        final TestHealthCheck readiness = new TestHealthCheck("Readiness", HealthCheckGroup.READINESS, HealthCheckGroup.STARTUP);
+        final HealthCheckScheduler scheduler = scheduler(liveness, readiness);
+        scheduler.start();
+        liveness.complete(0, true);
+        readiness.complete(0, false);
+
+        assertEquals(ImmutableList.of("Liveness"), names(scheduler.getResults(HealthCheckGroup.LIVENESS)));
+        assertEquals(ImmutableList.of("Readiness"), names(scheduler.getResults(HealthCheckGroup.READINESS)));
+        assertEquals(ImmutableList.of("Readiness"), names(scheduler.getResults(HealthCheckGroup.STARTUP)));
+        assertEquals(HealthState.DOWN, scheduler.getResults(HealthCheckGroup.READINESS).get(0).getState());
+        assertEquals(2, scheduler.getResults().size());
+    }
+
+    @Test
+    public void testRefreshWhileRunningRunsOnceMore() {
+        final TestHealthCheck healthCheck = new TestHealthCheck("Database", HealthCheckGroup.READINESS);
+        final HealthCheckScheduler scheduler = scheduler(healthCheck);
+        scheduler.start();
+        assertEquals(1, healthCheck.executions.size());
+
+        // Both refreshes arrive while the first execution is running and are served by a single rerun
+        scheduler.refresh();
+        scheduler.refresh();
+        assertEquals(1, healthCheck.executions.size());
+
+        healthCheck.complete(0, false);
+        assertEquals(2, healthCheck.executions.size());
+        assertEquals(HealthState.DOWN, scheduler.getResults().get(0).getState());
+
+        healthCheck.complete(1, true);
+        assertEquals(2, healthCheck.executions.size());
+        assertEquals(HealthState.UP, scheduler.getResults().get(0).getState());
+
+        // Not running any more, so a refresh executes right away
+        scheduler.refresh();
+        assertEquals(3, healthCheck.executions.size());
+    }
+
+    @Test
+    public void testStopCancelsExecutions() {
+        final TestHealthCheck healthCheck = new TestHealthCheck("Database", HealthCheckGroup.READINESS);
+        final HealthCheckScheduler scheduler = scheduler(healthCheck);
+        scheduler.start();
+        scheduler.refresh();
+
+        scheduler.stop();
+        healthCheck.complete(0, true);
+        scheduler.refresh();
+
+        assertEquals(1, healthCheck.executions.size());
+    }
+
+    private HealthCheckScheduler scheduler(HealthCheck... healthChecks) {
+        return new HealthCheckScheduler(vertx, ImmutableSet.copyOf(healthChecks), clock);
+    }
+
+    private static List<String> names(List<HealthCheckResult> results) {
+        return results.stream().map(HealthCheckResult::getHealtCheckName).collect(ImmutableList.toImmutableList());
+    }
+
+    private static class TestHealthCheck extends HealthCheck {
+
+        private final String name;
+        private final Set<HealthCheckGroup> groups;
+        private final List<SingleSubject<HealthCheckResult>> executions = new CopyOnWriteArrayList<>();
+
+        TestHealthCheck(String name, HealthCheckGroup... groups) {
+            this.name = name;
+            this.groups = ImmutableSet.copyOf(groups);
+        }
+
+        void complete(int execution, boolean up) {
+            executions.get(execution).onSuccess(createResult(up));
+        }
+
+        @Override
+        protected Single<HealthCheckResult> executeInternal() {
+            final SingleSubject<HealthCheckResult> execution = SingleSubject.create();
+            executions.add(execution);
+            return execution;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Set<HealthCheckGroup> getGroups() {
+            return groups;
+        }
+
+        @Override
+        public long getInterval() {
+            return 1;
+        }
+
+        @Override
+        public TimeUnit getIntervalUnit() {
+            return TimeUnit.HOURS;
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.core.health;
+
+import io.prometheus.client.CollectorRegistry;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.SingleSubject;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HealthCheckTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    public void testConcurrentExecutionsShareOneCheck() throws Exception {
+        final List<SingleSubject<HealthCheckResult>> executions = new CopyOnWriteArrayList<>();
+        final TestHealthCheck healthCheck = new TestHealthCheck("Shared", () -> {
+            final SingleSubject<HealthCheckResult> execution = SingleSubject.create();
+            executions.add(execution);
+            return execution;
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<TestObserver<HealthCheckResult>> observers = new CopyOnWriteArrayList<>();
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        observers.add(healthCheck.execute().test());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, healthCheck.calls.get());
+        assertEquals(CALLERS, observers.size());
+
+        executions.get(0).onSuccess(healthCheck.createResult(true));
+        for (TestObserver<HealthCheckResult> observer : observers) {
+            assertEquals(HealthState.UP, observer.assertComplete().values().get(0).getState());
+        }
+
+        // The shared execution is over, the next caller starts a new one
+        healthCheck.execute().test();
+        assertEquals(2, healthCheck.calls.get());
+        assertEquals(1.0D, executionCount("Shared"), 0.0D);
+    }
+
+    @Test
+    public void testUpIsRecorded() {
+        final TestHealthCheck healthCheck = new TestHealthCheck("RecordsUp", () -> Single.just(HealthCheckResult.create(true, "RecordsUp")));
+
+        assertEquals(HealthState.UP, healthCheck.execute().blockingGet().getState());
+
+        assertOutcome("RecordsUp", "up");
+    }
+
+    @Test
+    public void testDownIsRecorded() {
+        final TestHealthCheck healthCheck = new TestHealthCheck("RecordsDown", () -> Single.just(HealthCheckResult.create(false, "RecordsDown")));
+
+        assertEquals(HealthState.DOWN, healthCheck.execute().blockingGet().getState());
+
+        assertOutcome("RecordsDown", "down");
+    }
+
+    @Test
+    public void testTimeoutIsRecorded() {
+        final TestHealthCheck healthCheck = new TestHealthCheck("RecordsTimeout", Single::never);
+
+        final HealthCheckResult result = healthCheck.execute().blockingGet();
+
+        assertEquals(HealthState.DOWN, result.getState());
+        assertOutcome("RecordsTimeout", "timeout");
+    }
+
+    @Test
+    public void testErrorIsRecorded() {
+        final TestHealthCheck healthCheck = new TestHealthCheck("RecordsError", () -> {
+            throw new IllegalStateException("Connection refused");
+        });
+
+        final HealthCheckResult result = healthCheck.execute().blockingGet();
+
+        assertEquals(HealthState.DOWN, result.getState());
+        assertEquals("Connection refused", result.getMessage());
+        assertOutcome("RecordsError", "error");
+    }
+
+    private static void assertOutcome(String name, String outcome) {
+        for (String other : new String[] {"up", "down", "timeout", "error"}) {
+            assertEquals(other, other.equals(outcome) ? 1.0D : 0.0D, outcomeCount(name, other), 0.0D);
+        }
+        assertEquals(1.0D, executionCount(name), 0.0D);
+    }
+
+    private static double outcomeCount(String name, String outcome) {
+        final Double value = CollectorRegistry.defaultRegistry.getSampleValue("jzenith_health_check_total",
+                new String[] {"check", "outcome"}, new String[] {name, outcome});
+        return value == null ? 0.0D : value;
+    }
+
+    private static double executionCount(String name) {
+        final Double value = CollectorRegistry.defaultRegistry.getSampleValue("jzenith_health_check_duration_seconds_count",
+                new String[] {"check"}, new String[] {name});
+        return value == null ? 0.0D : value;
+    }
+
+    private static class TestHealthCheck extends HealthCheck {
+
+        private final String name;
+        private final Supplier<Single<HealthCheckResult>> check;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        TestHealthCheck(String name, Supplier<Single<HealthCheckResult>> check) {
+            this.name = name;
+            this.check = check;
+        }
+
+        @Override
+        protected Single<HealthCheckResult> executeInternal() {
+            calls.incrementAndGet();
+            return check.get();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getTimeout() {
+            return 50;
+        }
+
+        @Override
+        public TimeUnit getTimeoutUnit() {
+            return TimeUnit.MILLISECONDS;
+        }
+    }
+}
@@ -38,7 +38,8 @@ public class ExampleApp {
         return JZenith.application(args)
                 .withPlugins(
                         RestPlugin.withResources(HelloWorldResource.class, UserResource.class)
-                                  .withMapping(NoSuchUserException.class, 404),
+                                  .withMapping(NoSuchUserException.class, 404)
+                                  .dependsOn(PostgresqlPlugin.class),
                         PostgresqlPlugin.create()
                 )
                 .withModules(new ServiceLayerModule(), new PersistenceLayerModule(), new MapperModule())
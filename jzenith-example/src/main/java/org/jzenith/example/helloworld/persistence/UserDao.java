@@ -18,7 +18,6 @@ package org.jzenith.example.helloworld.persistence;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import org.jzenith.example.helloworld.persistence.model.Deleted;
-import org.jzenith.example.helloworld.persistence.model.Updated;
 import org.jzenith.example.helloworld.service.model.User;
 import org.jzenith.rest.model.Page;
 
@@ -30,7 +29,10 @@ public interface UserDao {
 
     Maybe<User> getById(UUID id);
 
-    Single<Updated> updateNameById(UUID id, String name);
+    /**
+     * @return the updated user, empty if there is no user with the id
+     */
+    Maybe<User> updateNameById(UUID id, String name);
 
     Single<Page<User>> listUsers(Integer offset, Integer limit);
 
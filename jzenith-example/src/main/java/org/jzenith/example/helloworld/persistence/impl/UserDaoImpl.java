@@ -22,17 +22,16 @@ import lombok.NonNull;
 import org.jooq.*;
 import org.jzenith.example.helloworld.persistence.UserDao;
 import org.jzenith.example.helloworld.persistence.model.Deleted;
-import org.jzenith.example.helloworld.persistence.model.Updated;
 import org.jzenith.example.helloworld.service.model.User;
 import org.jzenith.postgresql.PostgresqlClient;
+import org.jzenith.postgresql.QueryTemplate;
 import org.jzenith.rest.model.Page;
 
 import javax.inject.Inject;
-import java.util.List;
 import java.util.UUID;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static org.jooq.impl.DSL.count;
+import static org.jooq.impl.DSL.param;
 import static org.jzenith.example.helloworld.persistence.impl.Users.*;
 
 public class UserDaoImpl implements UserDao {
@@ -40,73 +39,71 @@ public class UserDaoImpl implements UserDao {
     private final PostgresqlClient client;
     private final DSLContext dslContext;
 
+    private final QueryTemplate insertUser;
+    private final QueryTemplate selectUserById;
+    private final QueryTemplate selectUsersPage;
+    private final QueryTemplate updateNameById;
+    private final QueryTemplate deleteUserById;
+
     @Inject
     public UserDaoImpl(PostgresqlClient client, DSLContext dslContext) {
         this.client = client;
         this.dslContext = dslContext;
+
+        this.insertUser = client.template(dslContext.insertInto(USERS_TABLE)
+                .columns(ID_FIELD, NAME_FIELD)
+                .values(param(ID_FIELD.getName(), UUID.class), param(NAME_FIELD.getName(), String.class)));
+        this.selectUserById = client.template(dslContext.select(ID_FIELD, NAME_FIELD)
+                .from(USERS_TABLE)
+                .where(ID_FIELD.eq(param(ID_FIELD.getName(), UUID.class))));
+        this.selectUsersPage = client.template(dslContext.select(ID_FIELD, NAME_FIELD)
+                .from(USERS_TABLE)
+                .orderBy(NAME_FIELD.asc())
+                .offset(param("offset", Integer.class))
+                .limit(param("limit", Integer.class)));
+        this.updateNameById = client.template(dslContext.update(USERS_TABLE)
+                .set(NAME_FIELD, param(NAME_FIELD.getName(), String.class))
+                .where(ID_FIELD.eq(param(ID_FIELD.getName(), UUID.class)))
+                .returning(ID_FIELD, NAME_FIELD));
+        this.deleteUserById = client.template(dslContext.deleteFrom(USERS_TABLE)
+                .where(ID_FIELD.eq(param(ID_FIELD.getName(), UUID.class))));
     }
 
     @Override
     public Single<User> save(@NonNull User user) {
-        final Insert<?> insert = dslContext.insertInto(USERS_TABLE)
-                .columns(ID_FIELD,
-                        NAME_FIELD)
-                .values(user.getId(), user.getName());
-
-        return client.execute(insert)
+        return client.execute(insertUser, user.getId(), user.getName())
                 .map(result -> user);
     }
 
     @Override
     public Maybe<User> getById(@NonNull UUID id) {
-        final Select<?> select = dslContext.select(ID_FIELD, NAME_FIELD)
-                .from(USERS_TABLE)
-                .where(ID_FIELD.eq(id));
-
-        return client.executeForSingleRow(select)
+        return client.executeForSingleRow(selectUserById, id)
                 .map(this::toUser);
     }
 
     @Override
-    public Single<Updated> updateNameById(@NonNull UUID id, @NonNull String name) {
-        final Update<?> update = dslContext.update(USERS_TABLE)
-                .set(NAME_FIELD, name)
-                .where(ID_FIELD.eq(id));
-
-        return client.executeForRowCount(update)
-                .map(count -> count > 0 ? Updated.YES : Updated.NO);
+    public Maybe<User> updateNameById(@NonNull UUID id, @NonNull String name) {
+        return client.executeReturningSingle(updateNameById, this::toUser, name, id);
     }
 
     @Override
     public Single<Page<User>> listUsers(@NonNull Integer offset, @NonNull Integer limit) {
-        final Select<?> select = dslContext.select(ID_FIELD, NAME_FIELD)
-                .from(USERS_TABLE)
-                .orderBy(NAME_FIELD.asc())
-                .offset(offset)
-                .limit(limit);
-
         final Select<?> count = dslContext.select(count())
                 .from(USERS_TABLE);
 
         return Single.zip(
                 client.executeForSingleRow(count).toSingle(),
-                client.stream(select, offset, limit).toList(),
-                (countRow, valueRows) -> new Page<>(offset, limit, countRow.getLong(0), mapToUsers(valueRows)));
+                // Rendered by jOOQ as LIMIT ? OFFSET ?, both bigint in PostgreSQL
+                client.executeReturning(selectUsersPage, this::toUser, limit.longValue(), offset.longValue()),
+                (countRow, users) -> new Page<>(offset, limit, countRow.getLong(0), users));
     }
 
     @Override
     public Single<Deleted> deleteById(@NonNull UUID id) {
-        final Delete<?> delete = dslContext.deleteFrom(USERS_TABLE)
-                .where(ID_FIELD.eq(id));
-
-        return client.executeForRowCount(delete)
+        return client.executeForRowCount(deleteUserById, id)
                 .map(count -> count > 0 ? Deleted.YES : Deleted.NO);
     }
 
-    private List<User> mapToUsers(List<Row> valueRows) {
-        return valueRows.stream().map(this::toUser).collect(toImmutableList());
-    }
-
     private User toUser(Row row) {
         return new User((UUID) row.getValue(ID_FIELD.getName()),
                 row.getString(NAME_FIELD.getName()));
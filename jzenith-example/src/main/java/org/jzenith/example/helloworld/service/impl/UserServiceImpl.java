@@ -21,7 +21,6 @@ import io.reactivex.Single;
 import lombok.NonNull;
 import org.jzenith.example.helloworld.persistence.UserDao;
 import org.jzenith.example.helloworld.persistence.model.Deleted;
-import org.jzenith.example.helloworld.persistence.model.Updated;
 import org.jzenith.example.helloworld.service.UserService;
 import org.jzenith.example.helloworld.service.exception.NoSuchUserException;
 import org.jzenith.example.helloworld.service.model.User;
@@ -53,9 +52,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public Single<User> updateById(@NonNull UUID id, @NonNull String name) {
         return userDao.updateNameById(id, name)
-                .filter(Updated::isUpdated)
-                .switchIfEmpty(Single.error(new NoSuchUserException(id)))
-                .flatMap(updated -> getById(id));
+                .switchIfEmpty(Single.error(new NoSuchUserException(id)));
     }
 
     @Override
@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.example;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import io.reactivex.Flowable;
+import io.vertx.core.buffer.Buffer;
+import org.jboss.resteasy.annotations.Stream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.jzenith.core.JZenith;
+import org.jzenith.postgresql.PostgresqlCopy;
+import org.jzenith.postgresql.PostgresqlPlugin;
+import org.jzenith.rest.RestPlugin;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CopyOutResourceIT {
+
+    private static int port;
+
+    @Path("/export")
+    public static class ExportResource {
+
+        private final PostgresqlCopy copy;
+
+        @Inject
+        public ExportResource(PostgresqlCopy copy) {
+            this.copy = copy;
+        }
+
+        @GET
+        @Produces("text/csv")
+        @Stream(Stream.MODE.RAW)
+        public Flowable<Buffer> export(@QueryParam("rows") int rows) {
+            return copy.copyOut("COPY (select i, repeat('x', 100) from generate_series(1, " + rows + ") i) TO STDOUT (FORMAT csv)");
+        }
+    }
+
+    @BeforeClass
+    public static void startup() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        JZenith.application()
+                .withPlugins(RestPlugin.withResources(ExportResource.class).dependsOn(PostgresqlPlugin.class),
+                        PostgresqlPlugin.create())
+                .withConfiguration("rest.port", String.valueOf(port))
+                .withConfiguration("postgresql.database", "test")
+                .withConfiguration("postgresql.username", "test")
+                .withConfiguration("postgresql.password", "test")
+                .run();
+    }
+
+    @Test
+    public void testExportIsStreamedAsCsv() throws Exception {
+        final HttpURLConnection connection = open(5000);
+
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        assertThat(connection.getContentType()).startsWith("text/csv");
+        // Streamed, the length is not known up front
+        assertThat(connection.getHeaderField("Transfer-Encoding")).isEqualTo("chunked");
+        try (InputStream body = connection.getInputStream()) {
+            final String[] lines = new String(ByteStreams.toByteArray(body), StandardCharsets.UTF_8).split("\n");
+            assertThat(lines).hasSize(5000);
+            assertThat(lines[0]).isEqualTo("1," + Strings.repeat("x", 100));
+            assertThat(lines[4999]).isEqualTo("5000," + Strings.repeat("x", 100));
+        }
+    }
+
+    @Test
+    public void testClosedResponseCancelsExport() throws Exception {
+        // About a gigabyte, far more than the client reads
+        final HttpURLConnection connection = open(10_000_000);
+        try (InputStream body = connection.getInputStream()) {
+            assertThat(body.read(new byte[1024])).isPositive();
+            awaitActiveCopies(1);
+        } finally {
+            connection.disconnect();
+        }
+
+        awaitActiveCopies(0);
+    }
+
+    private static HttpURLConnection open(int rows) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/export?rows=" + rows).openConnection();
+        connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(10));
+        return connection;
+    }
+
+    private static void awaitActiveCopies(int expected) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (countActiveCopies() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(countActiveCopies()).isEqualTo(expected);
+    }
+
+    private static int countActiveCopies() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:postgresql:test", "test", "test");
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from pg_stat_activity "
+                     + "where datname = current_database() and pid <> pg_backend_pid() and query like 'COPY%'")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
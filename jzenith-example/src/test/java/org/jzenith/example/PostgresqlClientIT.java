@@ -0,0 +1,431 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.example;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Injector;
+import io.reactiverse.pgclient.PgException;
+import io.reactiverse.reactivex.pgclient.PgRowSet;
+import io.reactiverse.reactivex.pgclient.Row;
+import io.reactivex.Flowable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import io.vertx.core.buffer.Buffer;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Query;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.jzenith.core.JZenith;
+import org.jzenith.postgresql.PostgresqlClient;
+import org.jzenith.postgresql.PostgresqlCopy;
+import org.jzenith.postgresql.PostgresqlPlugin;
+import org.jzenith.postgresql.QueryTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PostgresqlClientIT {
+
+    private static final Table<Record> USERS = DSL.table("users");
+    private static final Field<UUID> ID = DSL.field("id", UUID.class);
+    private static final Field<String> NAME = DSL.field("name", String.class);
+    private static final Field<String> STATEMENT = DSL.field("statement", String.class);
+    private static final int USER_COUNT = 50;
+    private static final String COPY_USERS = "COPY users (id, name) FROM STDIN (FORMAT csv)";
+
+    private static PostgresqlClient client;
+    private static PostgresqlClient uncachedClient;
+    private static PostgresqlClient pooledClient;
+    private static PostgresqlCopy copy;
+    private static DSLContext dslContext;
+
+    @BeforeClass
+    public static void startup() {
+        // One connection per pool, so a connection that is not returned blocks the next statement
+        final JZenith jZenith = JZenith.application()
+                .withPlugins(PostgresqlPlugin.create())
+                .withConfiguration("postgresql.database", "test")
+                .withConfiguration("postgresql.username", "test")
+                .withConfiguration("postgresql.password", "test")
+                .withConfiguration("postgresql.pool.size", "1")
+                .withConfiguration("postgresql.unnamed.statement.pool.size", "1");
+        final Injector injector = jZenith.createInjectorForTesting();
+        jZenith.run();
+
+        client = injector.getInstance(PostgresqlClient.class);
+        copy = injector.getInstance(PostgresqlCopy.class);
+        dslContext = injector.getInstance(DSLContext.class);
+
+        final JZenith uncached = JZenith.application()
+                .withPlugins(PostgresqlPlugin.create())
+                .withConfiguration("postgresql.database", "test")
+                .withConfiguration("postgresql.username", "test")
+                .withConfiguration("postgresql.password", "test")
+                .withConfiguration("postgresql.pool.size", "1")
+                .withConfiguration("postgresql.prepared.statement.cache", "false");
+        final Injector uncachedInjector = uncached.createInjectorForTesting();
+        uncached.run();
+
+        uncachedClient = uncachedInjector.getInstance(PostgresqlClient.class);
+
+        final JZenith pooled = JZenith.application()
+                .withPlugins(PostgresqlPlugin.create())
+                .withConfiguration("postgresql.database", "test")
+                .withConfiguration("postgresql.username", "test")
+                .withConfiguration("postgresql.password", "test")
+                .withConfiguration("postgresql.pool.size", "4");
+        final Injector pooledInjector = pooled.createInjectorForTesting();
+        pooled.run();
+
+        pooledClient = pooledInjector.getInstance(PostgresqlClient.class);
+    }
+
+    private static Connection getConnection() throws SQLException {
+        return DriverManager.getConnection("jdbc:postgresql:test", "test", "test");
+    }
+
+    @Before
+    public void setup() throws Exception {
+        try (Connection connection = getConnection();
+             Statement delete = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement("insert into users (id, name) values (?, ?)")) {
+            delete.executeUpdate("delete from users");
+            for (int i = 0; i < USER_COUNT; i++) {
+                insert.setObject(1, UUID.randomUUID());
+                insert.setString(2, String.format("user_%02d", i));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    @Test
+    public void testStreamFetchesOnlyRequestedRows() throws Exception {
+        final TestSubscriber<Row> subscriber = client.stream(selectUsers(), 10).test(0);
+
+        subscriber.request(5);
+        awaitValueCount(subscriber, 5);
+        subscriber.assertNotComplete();
+        assertThat(subscriber.values().get(4).getString("name")).isEqualTo("user_04");
+
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.awaitDone(5, TimeUnit.SECONDS)
+                .assertComplete()
+                .assertValueCount(USER_COUNT);
+        assertThat(subscriber.values().get(USER_COUNT - 1).getString("name")).isEqualTo("user_49");
+    }
+
+    @Test
+    public void testCancelledStreamReleasesConnection() throws Exception {
+        // The first execution runs as unnamed statement, the following ones are admitted to the prepared statement cache
+        final Query query = dslContext.select(NAME).from(USERS).where(NAME.like("user_%")).orderBy(NAME);
+        cancelAfterFirstRows(query);
+        assertNoTransactionLeftOpen();
+
+        // Needs the connection of the pool for unnamed statements again
+        client.stream(dslContext.select(NAME).from(USERS).where(NAME.like("user_1%")).orderBy(NAME.desc()), 5)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertComplete()
+                .assertValueCount(10);
+
+        cancelAfterFirstRows(query);
+        assertNoTransactionLeftOpen();
+
+        // Needs the connection of the main pool again
+        client.stream(query, 5)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertComplete()
+                .assertValueCount(USER_COUNT);
+    }
+
+    @Test
+    public void testBatchReturnsRowCountPerStatement() throws Exception {
+        final Query deleteByName = dslContext.deleteFrom(USERS).where(NAME.like(DSL.param("pattern", String.class)));
+
+        // The first execution runs as unnamed statement, the second one is admitted to the prepared statement cache
+        final List<Integer> unnamedRowCounts = client.executeBatch(deleteByName,
+                ImmutableList.of(ImmutableList.of("user_0%"), ImmutableList.of("nobody"), ImmutableList.of("user_1%")))
+                .blockingGet();
+        final List<Integer> preparedRowCounts = client.executeBatch(deleteByName,
+                ImmutableList.of(ImmutableList.of("user_2%"), ImmutableList.of("user_0%"), ImmutableList.of("user_35")))
+                .blockingGet();
+
+        assertThat(unnamedRowCounts).containsExactly(10, 0, 10);
+        assertThat(preparedRowCounts).containsExactly(10, 0, 1);
+        assertThat(countUsers()).isEqualTo(USER_COUNT - 31);
+    }
+
+    @Test
+    public void testAdmittedStatementsRunOnAnyPooledConnection() throws Exception {
+        final Query count = dslContext.selectCount().from(USERS);
+        final QueryTemplate template = pooledClient.template(dslContext.selectCount().from(USERS).where(NAME.like(DSL.param("name", String.class))));
+
+        // Admitted from the second execution on, the executions are spread over the connections of the pool
+        for (int i = 0; i < 8; i++) {
+            assertThat(pooledClient.execute(count).blockingGet().iterator().next().getLong(0)).isEqualTo(USER_COUNT);
+            assertThat(pooledClient.execute(template, "user_0%").blockingGet().iterator().next().getLong(0)).isEqualTo(10);
+            assertThat(pooledClient.executeBatch(template, ImmutableList.of(ImmutableList.of("user_1%"))).blockingGet()).containsExactly(1);
+        }
+
+        final List<PgRowSet> concurrent = Flowable.range(0, 16)
+                .flatMapSingle(i -> pooledClient.execute(template, "user_2%"))
+                .toList()
+                .blockingGet();
+        assertThat(concurrent).allMatch(rowSet -> rowSet.iterator().next().getLong(0) == 10);
+    }
+
+    @Test
+    public void testStreamWithWrongBindValuesFails() throws Exception {
+        // jOOQ binds the limit as an Integer, PostgreSQL expects a bigint
+        client.stream(dslContext.select(NAME).from(USERS).orderBy(NAME).limit(10)).test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertError(IllegalArgumentException.class);
+
+        // The connection is back in the pool of one connection
+        assertThat(client.stream(selectUsers()).count().blockingGet()).isEqualTo(USER_COUNT);
+        awaitCondition(() -> countOpenTransactions() == 0);
+    }
+
+    @Test
+    public void testCopyInStoresAllRows() throws Exception {
+        // A single \. line would end the data of a CSV copy
+        final Flowable<Buffer> rows = Flowable.range(0, 1000)
+                .map(i -> i == 500 ? "\\." : "copied_" + i)
+                .map(name -> PostgresqlCopy.csvRow(UUID.randomUUID(), name));
+
+        final long copied = copy.copyIn(COPY_USERS, rows).blockingGet();
+
+        assertThat(copied).isEqualTo(1000);
+        assertThat(countUsers()).isEqualTo(USER_COUNT + 1000);
+    }
+
+    @Test
+    public void testCancelledCopyInStoresNothing() throws Exception {
+        final PublishProcessor<Buffer> rows = PublishProcessor.create();
+        final TestObserver<Long> observer = copy.copyIn(COPY_USERS, rows).test();
+        awaitCondition(rows::hasSubscribers);
+        rows.onNext(PostgresqlCopy.csvRow(UUID.randomUUID(), "copied"));
+
+        observer.dispose();
+
+        awaitCondition(() -> !rows.hasSubscribers());
+        awaitCondition(() -> countActiveCopies() == 0);
+        assertThat(countUsers()).isEqualTo(USER_COUNT);
+    }
+
+    @Test
+    public void testCopyOutStreamsAllRowsInChunks() throws Exception {
+        final int rowCount = 5000;
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= rowCount; i++) {
+            expected.append(i).append(',').append(Strings.repeat("x", 100)).append('\n');
+        }
+
+        final List<Buffer> chunks = copy.copyOut(copyOutSeries(rowCount)).toList().blockingGet();
+
+        // About 530 KB of rows, read in chunks of at least 64 KiB except for the last one
+        assertThat(chunks.size()).isGreaterThan(1);
+        assertThat(chunks.subList(0, chunks.size() - 1)).allMatch(chunk -> chunk.length() >= 64 * 1024);
+        final Buffer all = Buffer.buffer();
+        chunks.forEach(all::appendBuffer);
+        assertThat(all.toString()).isEqualTo(expected.toString());
+        awaitCondition(() -> countActiveCopies() == 0);
+    }
+
+    @Test
+    public void testCancelledCopyOutReleasesConnection() throws Exception {
+        // About a gigabyte, far more than a test would ever read
+        final TestSubscriber<Buffer> subscriber = copy.copyOut(copyOutSeries(10_000_000)).test(1);
+        subscriber.awaitCount(1);
+        awaitCondition(() -> countActiveCopies() == 1);
+
+        subscriber.cancel();
+
+        awaitCondition(() -> countActiveCopies() == 0);
+        subscriber.assertValueCount(1).assertNotComplete().assertNoErrors();
+        assertThat(copy.copyOut(copyOutSeries(10)).count().blockingGet()).isEqualTo(1);
+    }
+
+    @Test
+    public void testTransactionExecutesStatementsInOrder() throws Exception {
+        assertTransactionExecutesStatementsInOrder(client);
+    }
+
+    @Test
+    public void testTransactionWithoutCacheExecutesStatementsInOrder() throws Exception {
+        assertTransactionExecutesStatementsInOrder(uncachedClient);
+    }
+
+    @Test
+    public void testFailedStatementRollsBackTransaction() throws Exception {
+        assertFailedStatementRollsBackTransaction(client);
+    }
+
+    @Test
+    public void testFailedStatementRollsBackTransactionWithoutCache() throws Exception {
+        assertFailedStatementRollsBackTransaction(uncachedClient);
+    }
+
+    @Test
+    public void testTransactionKeepsStatementsThatAreNotAdmittedOutOfTheCache() throws Exception {
+        final String marker = "ad_hoc_" + UUID.randomUUID().toString().replace("-", "");
+        final Query adHoc = dslContext.select(DSL.inline(marker));
+        final Query selectPreparedStatements = dslContext.select(STATEMENT).from(DSL.table("pg_prepared_statements"));
+
+        // Executed for the first time, so the transaction runs on the connection for unnamed statements
+        final PgRowSet preparedStatements = client.inTransaction(transaction -> transaction.execute(adHoc)
+                .flatMap(result -> transaction.execute(selectPreparedStatements)))
+                .blockingGet();
+
+        assertThat(preparedStatements.rowCount()).isZero();
+        assertNoTransactionLeftOpen();
+    }
+
+    private void assertTransactionExecutesStatementsInOrder(PostgresqlClient client) throws Exception {
+        final Query insert = dslContext.insertInto(USERS, ID, NAME).values(UUID.randomUUID(), "ordered_0");
+        final Query renameFirst = dslContext.update(USERS).set(NAME, "ordered_1").where(NAME.eq("ordered_0"));
+        final Query renameSecond = dslContext.update(USERS).set(NAME, "ordered_2").where(NAME.eq("ordered_1"));
+
+        // All statements are admitted in the transaction, the update is already prepared on the connection of the
+        // main pool and must not overtake the insert, which is not yet
+        client.execute(dslContext.insertInto(USERS, ID, NAME).values(UUID.randomUUID(), "warm_up")).blockingGet();
+        client.execute(dslContext.update(USERS).set(NAME, "nobody").where(NAME.eq("unknown"))).blockingGet();
+        client.execute(dslContext.update(USERS).set(NAME, "nobody").where(NAME.eq("unknown"))).blockingGet();
+        final List<PgRowSet> results = client.inTransaction(transaction -> transaction.executeAll(ImmutableList.of(insert, renameFirst, renameSecond)))
+                .blockingGet();
+
+        assertThat(results).extracting(PgRowSet::rowCount).containsExactly(1, 1, 1);
+        assertThat(countUsers("ordered_2")).isEqualTo(1);
+        assertThat(countUsers("ordered_%")).isEqualTo(1);
+        assertNoTransactionLeftOpen();
+    }
+
+    private void assertFailedStatementRollsBackTransaction(PostgresqlClient client) throws Exception {
+        final Query delete = dslContext.deleteFrom(USERS).where(NAME.like("user_0%"));
+        final Query divideByZero = dslContext.select(DSL.inline(1).div(DSL.inline(0)));
+
+        client.inTransaction(transaction -> transaction.executeAll(ImmutableList.of(delete, divideByZero)))
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertError(PgException.class);
+        assertThat(countUsers()).isEqualTo(USER_COUNT);
+
+        // Also if the work carries on after the failure
+        client.inTransaction(transaction -> transaction.executeForRowCount(delete)
+                .flatMap(deleted -> transaction.executeForRowCount(divideByZero).onErrorReturnItem(0)))
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertError(PgException.class);
+        assertThat(countUsers()).isEqualTo(USER_COUNT);
+        assertNoTransactionLeftOpen();
+    }
+
+    private Query selectUsers() {
+        return dslContext.select(NAME).from(USERS).orderBy(NAME);
+    }
+
+    private static void cancelAfterFirstRows(Query query) throws InterruptedException {
+        final TestSubscriber<Row> subscriber = client.stream(query, 5).test(0);
+        subscriber.request(3);
+        awaitValueCount(subscriber, 3);
+        subscriber.cancel();
+    }
+
+    private static void awaitValueCount(TestSubscriber<Row> subscriber, int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (subscriber.valueCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        subscriber.assertValueCount(count);
+    }
+
+    private static void assertNoTransactionLeftOpen() throws Exception {
+        // The rollback is sent asynchronously after the cancellation
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (countOpenTransactions() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(countOpenTransactions()).isZero();
+    }
+
+    private static int countUsers() throws SQLException {
+        return countUsers("%");
+    }
+
+    private static int countUsers(String namePattern) throws SQLException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement("select count(*) from users where name like ?")) {
+            statement.setString(1, namePattern);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    private static String copyOutSeries(int rowCount) {
+        return "COPY (select i, repeat('x', 100) from generate_series(1, " + rowCount + ") i) TO STDOUT (FORMAT csv)";
+    }
+
+    private static void awaitCondition(Callable<Boolean> condition) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.call() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(condition.call()).isTrue();
+    }
+
+    private static int countActiveCopies() throws SQLException {
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from pg_stat_activity "
+                     + "where datname = current_database() and pid <> pg_backend_pid() and query like 'COPY%'")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static int countOpenTransactions() throws SQLException {
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from pg_stat_activity "
+                     + "where datname = current_database() and pid <> pg_backend_pid() and state like 'idle in transaction%'")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
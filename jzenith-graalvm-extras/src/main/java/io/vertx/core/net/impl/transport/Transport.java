@@ -49,14 +49,27 @@ public class Transport {
    */
   public static final Transport JDK = new Transport();
 
+  // Patched: set by native-image, both while building the image and when running it
+  private static final String NATIVE_IMAGE_PROPERTY = "org.graalvm.nativeimage.imagecode";
+
+  private static final String EPOLL_TRANSPORT = "io.vertx.core.net.impl.transport.EpollTransport";
+
   /**
    * The native transport, it may be {@code null} or failed.
    */
   public static Transport nativeTransport() {
-    // Patched: I remove the native transport discovery. 
-    // The imports would be picked up by substrate 
-    // and cause further issues. 
-    return null;
+    // Patched: native images always use the JDK transport. On a JVM the epoll
+    // transport is loaded reflectively, a direct reference would be picked up
+    // by substrate and cause further issues.
+    if (System.getProperty(NATIVE_IMAGE_PROPERTY) != null) {
+      return null;
+    }
+    try {
+      return (Transport) Class.forName(EPOLL_TRANSPORT).getDeclaredConstructor().newInstance();
+    } catch (Throwable ignore) {
+      // Jar not here
+      return null;
+    }
   }
 
   Transport() {
@@ -191,9 +204,9 @@ public class Transport {
 
   public void configure(ClientOptionsBase options, Bootstrap bootstrap) {
     BiConsumer<ChannelOption<Object>, Object> setter = bootstrap::option;
-    setOption("TCK_CORK", options.isTcpCork(), setter);
-    setOption("TCK_QUICKACK", options.isTcpQuickAck(), setter);
-    setOption("TCK_FASTOPEN", options.isTcpFastOpen(), setter);
+    setOption("TCP_CORK", options.isTcpCork(), setter);
+    setOption("TCP_QUICKACK", options.isTcpQuickAck(), setter);
+    setOption("TCP_FASTOPEN", options.isTcpFastOpen(), setter);
     setOption("SO_REUSEPORT", options.isReusePort(), setter);
     if (options.getLocalAddress() != null) {
       bootstrap.localAddress(options.getLocalAddress(), 0);
@@ -220,9 +233,9 @@ public class Transport {
 
   public void configure(NetServerOptions options, ServerBootstrap bootstrap) {
     BiConsumer<ChannelOption<Object>, Object> setter = bootstrap::childOption;
-    setOption("TCK_CORK", options.isTcpCork(), setter);
-    setOption("TCK_QUICKACK", options.isTcpQuickAck(), setter);
-    setOption("TCK_FASTOPEN", options.isTcpFastOpen(), setter);
+    setOption("TCP_CORK", options.isTcpCork(), setter);
+    setOption("TCP_QUICKACK", options.isTcpQuickAck(), setter);
+    setOption("TCP_FASTOPEN", options.isTcpFastOpen(), setter);
     setOption("SO_REUSEPORT", options.isReusePort(), setter);
     bootstrap.childOption(ChannelOption.TCP_NODELAY, options.isTcpNoDelay());
     if (options.getSendBufferSize() != -1) {
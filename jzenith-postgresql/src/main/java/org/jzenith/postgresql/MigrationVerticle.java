@@ -18,6 +18,7 @@ package org.jzenith.postgresql;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import org.flywaydb.core.Flyway;
+import org.jzenith.core.metrics.StartupReport;
 import org.postgresql.ds.PGSimpleDataSource;
 
 import javax.inject.Inject;
@@ -27,15 +28,13 @@ public class MigrationVerticle extends AbstractVerticle {
     @Inject
     private PostgresqlConfiguration configuration;
 
+    @Inject
+    private StartupReport startupReport;
+
     @Override
     public void start(Future<Void> startFuture) throws Exception {
         vertx.executeBlocking(future -> {
-            final PGSimpleDataSource dataSource = new PGSimpleDataSource();
-            dataSource.setPortNumber(configuration.getPort());
-            dataSource.setServerName(configuration.getHost());
-            dataSource.setDatabaseName(configuration.getDatabase());
-            dataSource.setUser(configuration.getUsername());
-            dataSource.setPassword(configuration.getPassword());
+            final PGSimpleDataSource dataSource = PostgresqlDataSource.create(configuration);
 
             // Create the Flyway instance
             final Flyway flyway = new Flyway();
@@ -44,7 +43,7 @@ public class MigrationVerticle extends AbstractVerticle {
             flyway.setDataSource(dataSource);
 
             // Start the migration
-            future.complete(flyway.migrate());
+            future.complete(startupReport.measure(PostgresqlPlugin.NAME, "flyway_migration", flyway::migrate));
         }, result -> {
             if (result.failed()) {
                 startFuture.fail(result.cause());
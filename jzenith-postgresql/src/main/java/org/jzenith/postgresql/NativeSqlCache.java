@@ -0,0 +1,69 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import io.prometheus.client.Counter;
+import org.postgresql.core.NativeQuery;
+import org.postgresql.core.Parser;
+
+import java.sql.SQLException;
+
+/**
+ * Caches the native SQL (with {@code $n} placeholders) of rendered jOOQ SQL (with {@code ?} placeholders).
+ * <p>
+ * DAOs issue a small set of query shapes, so parsing every statement again is wasted work. Concurrent
+ * misses for the same SQL might parse it twice, which is harmless.
+ */
+class NativeSqlCache {
+
+    private static final Counter LOOKUPS = Counter.build()
+            .name("postgresql_sql_cache_total")
+            .help("Lookups of native SQL in the parsed SQL cache by result (hit or miss).")
+            .labelNames("result")
+            .register();
+
+    private static final Counter.Child HITS = LOOKUPS.labels("hit");
+    private static final Counter.Child MISSES = LOOKUPS.labels("miss");
+
+    private final Cache<String, String> nativeSqlBySql;
+
+    NativeSqlCache(long maximumSize) {
+        this.nativeSqlBySql = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    String nativeSql(String sql) throws SQLException {
+        final String cachedNativeSql = nativeSqlBySql.getIfPresent(sql);
+        if (cachedNativeSql != null) {
+            HITS.inc();
+            return cachedNativeSql;
+        }
+
+        MISSES.inc();
+        final String nativeSql = parseNativeSql(sql);
+        nativeSqlBySql.put(sql, nativeSql);
+        return nativeSql;
+    }
+
+    private static String parseNativeSql(String sql) throws SQLException {
+        final NativeQuery nativeQuery = Iterables.getOnlyElement(Parser.parseJdbcSql(sql, true, true, false, false));
+        return nativeQuery.nativeSql;
+    }
+}
@@ -41,21 +41,33 @@ class PostgresqlBinder extends AbstractModule {
         configurePgPool();
 
         bind(PostgresqlClient.class).in(Singleton.class);
+        bind(PostgresqlCopy.class).in(Singleton.class);
 
         bind(PostgresqlConfiguration.class).toProvider(new ConfigurationProvider<>(PostgresqlConfiguration.class));
-        final DSLContext context = DSL.using(SQLDialect.POSTGRES_10);
-
-        // Initialize Jooq on startup, because that takes a while
-        context.select().from("1").getSQL();
-
-        bind(DSLContext.class).toInstance(context);
+        bind(DSLContext.class).toInstance(DSL.using(SQLDialect.POSTGRES_10));
 
         final Multibinder<HealthCheck> healthCheckMultibinder = Multibinder.newSetBinder(binder(), HealthCheck.class);
         healthCheckMultibinder.addBinding().to(PostgresqlHealthCheck.class);
     }
 
     private void configurePgPool() {
+        bind(PostgresqlResources.class).in(Singleton.class);
         bind(PgPool.class).toProvider(new PgPoolProvider()).in(Singleton.class);
+        bind(UnnamedStatementPool.class).toProvider(new UnnamedStatementPoolProvider()).in(Singleton.class);
+    }
+
+    private static PgPoolOptions createPoolOptions(PostgresqlConfiguration configuration) {
+        final PgPoolOptions options = new PgPoolOptions()
+                .setPort(configuration.getPort())
+                .setHost(configuration.getHost())
+                .setDatabase(configuration.getDatabase())
+                .setUser(configuration.getUsername())
+                .setPassword(configuration.getPassword())
+                .setMaxSize(configuration.getPoolSize());
+        options.setConnectTimeout(Math.toIntExact(configuration.getConnectTimeout().toMillis()));
+        options.setPipeliningLimit(configuration.getPipeliningLimit());
+
+        return options;
     }
 
 
@@ -64,18 +76,16 @@ class PostgresqlBinder extends AbstractModule {
         @Inject
         private PostgresqlConfiguration configuration;
 
+        @Inject
+        private PostgresqlResources resources;
+
         @Override
         public PgPool get() {
-            final PgPoolOptions options = new PgPoolOptions()
-                    .setPort(configuration.getPort())
-                    .setHost(configuration.getHost())
-                    .setDatabase(configuration.getDatabase())
-                    .setUser(configuration.getUsername())
-                    .setPassword(configuration.getPassword())
-                    .setMaxSize(configuration.getPoolSize())
-                    .setConnectTimeout(1000);
+            final PgPoolOptions options = createPoolOptions(configuration);
+            options.setCachePreparedStatements(configuration.getPreparedStatementCache());
 
             final PgPool pool = PgClient.pool(options);
+            resources.register(pool::close);
 
             // warm up the pool
             pool.rxQuery("select 1;").subscribe();
@@ -83,4 +93,32 @@ class PostgresqlBinder extends AbstractModule {
             return pool;
         }
     }
+
+    private static class UnnamedStatementPoolProvider implements Provider<UnnamedStatementPool> {
+
+        @Inject
+        private PostgresqlConfiguration configuration;
+
+        @Inject
+        private PgPool pgPool;
+
+        @Inject
+        private PostgresqlResources resources;
+
+        @Override
+        public UnnamedStatementPool get() {
+            if (!configuration.getPreparedStatementCache()) {
+                return new UnnamedStatementPool(pgPool, false);
+            }
+
+            final PgPoolOptions options = createPoolOptions(configuration)
+                    .setMaxSize(configuration.getUnnamedStatementPoolSize());
+            options.setCachePreparedStatements(false);
+
+            final UnnamedStatementPool unnamedStatementPool = new UnnamedStatementPool(PgClient.pool(options), true);
+            resources.register(unnamedStatementPool::close);
+
+            return unnamedStatementPool;
+        }
+    }
 }
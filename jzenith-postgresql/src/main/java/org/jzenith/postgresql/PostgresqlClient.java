@@ -15,47 +15,252 @@
  */
 package org.jzenith.postgresql;
 
-import com.google.common.collect.Iterables;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import io.reactiverse.pgclient.impl.ArrayTuple;
+import io.prometheus.client.Histogram;
 import io.reactiverse.reactivex.pgclient.*;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Function;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
 import lombok.NonNull;
 import org.jooq.Query;
 import org.jooq.Select;
 import org.jooq.SelectJoinStep;
-import org.postgresql.core.NativeQuery;
-import org.postgresql.core.Parser;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class PostgresqlClient {
 
+    private static final Histogram BATCH_SIZE = Histogram.build()
+            .name("postgresql_batch_size")
+            .help("Number of statements per executed batch.")
+            .buckets(1D, 10D, 50D, 100D, 500D, 1_000D, 5_000D, 10_000D)
+            .register();
+
     private final PgPool pgPool;
+    private final UnnamedStatementPool unnamedStatementPool;
+    private final NativeSqlCache nativeSqlCache;
+    private final PreparedStatementAdmission preparedStatementAdmission;
+    private final int streamFetchSize;
 
     @Inject
-    public PostgresqlClient(PgPool pgPool) {
+    PostgresqlClient(PgPool pgPool, UnnamedStatementPool unnamedStatementPool, PostgresqlConfiguration configuration) {
         this.pgPool = pgPool;
+        this.unnamedStatementPool = unnamedStatementPool;
+        this.streamFetchSize = configuration.getStreamFetchSize();
+        this.nativeSqlCache = new NativeSqlCache(configuration.getSqlCacheSize());
+        this.preparedStatementAdmission = new PreparedStatementAdmission(configuration.getPreparedStatementCache(),
+                configuration.getPreparedStatementCacheSize(), configuration.getPreparedStatementCacheSqlLimit());
     }
 
     public Single<PgRowSet> execute(@NonNull Query query) {
         try {
-            final NativeQuery nativeQuery = parseNativeQuery(query);
+            final String nativeSql = nativeSqlCache.nativeSql(query.getSQL());
+            return onClientFor(nativeSql, client -> client.rxPreparedQuery(nativeSql, bindValuesToTuple(query)));
+        } catch (SQLException e) {
+            return Single.error(e);
+        }
+    }
+
+    /**
+     * Executes the query on the connection of a transaction, which has been taken from the pool that fits the
+     * admission of its first statement, see {@link PostgresqlTransaction}.
+     */
+    Single<PgRowSet> executeOn(PgClient pgClient, Query query) {
+        try {
+            return pgClient.rxPreparedQuery(nativeSqlCache.nativeSql(query.getSQL()), bindValuesToTuple(query));
+        } catch (SQLException e) {
+            return Single.error(e);
+        }
+    }
+
+    /**
+     * Executes the queries in order on the connection, without waiting for the previous results. All statements are
+     * prepared first, so an execution never overtakes a statement that is still being prepared.
+     */
+    Single<List<PgRowSet>> executeAllOn(PgConnection connection, List<? extends Query> queries) {
+        final List<String> nativeSqls = new ArrayList<>(queries.size());
+        try {
+            for (final Query query : queries) {
+                nativeSqls.add(nativeSqlCache.nativeSql(query.getSQL()));
+            }
+        } catch (SQLException e) {
+            return Single.error(e);
+        }
+        final List<Tuple> bindValues = queries.stream()
+                .map(this::bindValuesToTuple)
+                .collect(ImmutableList.toImmutableList());
+
+        // Each statement only once, preparing one that is already being prepared would prepare it twice
+        final List<String> statements = nativeSqls.stream()
+                .distinct()
+                .collect(ImmutableList.toImmutableList());
+        final List<Single<PgPreparedQuery>> preparations = statements.stream()
+                .map(connection::rxPrepare)
+                .collect(ImmutableList.toImmutableList());
+
+        // zip subscribes to the sources in order, the connection pipelines the preparations and then the executions
+        return Single.zip(preparations, Arrays::asList)
+                .flatMap(preparedQueries -> {
+                    final List<Single<PgRowSet>> executions = new ArrayList<>(queries.size());
+                    for (int i = 0; i < queries.size(); i++) {
+                        final PgPreparedQuery preparedQuery = (PgPreparedQuery) preparedQueries.get(statements.indexOf(nativeSqls.get(i)));
+                        executions.add(preparedQuery.rxExecute(bindValues.get(i)));
+                    }
+
+                    return Single.zip(executions, rowSets -> {
+                        final ImmutableList.Builder<PgRowSet> builder = ImmutableList.builderWithExpectedSize(rowSets.length);
+                        for (final Object rowSet : rowSets) {
+                            builder.add((PgRowSet) rowSet);
+                        }
+                        return builder.build();
+                    });
+                });
+    }
+
+    /**
+     * @return the main pool for statements admitted to the prepared statement cache, the pool for unnamed statements
+     * for all others
+     */
+    private PgPool poolFor(String nativeSql) {
+        return preparedStatementAdmission.admit(nativeSql) ? pgPool : unnamedStatementPool.get();
+    }
+
+    /**
+     * Runs the command with the pool that fits the admission of the statement. The pool prepares a statement and
+     * executes it as two commands that may run on different connections, which only works for unnamed statements.
+     * An admitted statement is named and only exists on the connection that prepared it, so the command runs on a
+     * connection of the main pool that is held until the command is done.
+     */
+    private <T> Single<T> onClientFor(String nativeSql, Function<PgClient, Single<T>> command) {
+        if (!preparedStatementAdmission.admit(nativeSql)) {
+            return Single.defer(() -> command.apply(unnamedStatementPool.get()));
+        }
+
+        return acquireConnection(pgPool)
+                .flatMap(connection -> {
+                    final Context context = Vertx.currentContext();
+                    return command.apply(connection)
+                            .doFinally(() -> onContext(context, connection::close));
+                });
+    }
+
+    /**
+     * Counts an execution of the statement in a transaction, see {@link PreparedStatementAdmission#admit(String)}.
+     */
+    boolean admit(Query query) {
+        try {
+            return preparedStatementAdmission.admit(nativeSqlCache.nativeSql(query.getSQL()));
+        } catch (SQLException e) {
+            // Fails again when it is executed
+            return false;
+        }
+    }
+
+    boolean admit(QueryTemplate template) {
+        return preparedStatementAdmission.admit(template.getNativeSql());
+    }
+
+    /**
+     * Takes a connection for a transaction and begins the transaction on it.
+     *
+     * @param admitted whether the first statement of the transaction is admitted to the prepared statement cache
+     */
+    Single<PgConnection> begin(boolean admitted) {
+        return acquireConnection(admitted ? pgPool : unnamedStatementPool.get())
+                .flatMap(connection -> connection.rxQuery("BEGIN")
+                        .map(begun -> connection)
+                        .doOnError(error -> connection.close()));
+    }
+
+    /**
+     * Renders the query and converts it to native SQL once, use {@link org.jooq.impl.DSL#param(String, Class)} for the values
+     * that are bound per execution. Declare templates at startup, e.g. in the constructor of a DAO.
+     */
+    public QueryTemplate template(@NonNull Query query) {
+        final String sql = query.getSQL();
+        try {
+            return new QueryTemplate(sql, nativeSqlCache.nativeSql(sql), query.getBindValues().size());
+        } catch (SQLException e) {
+            throw new IllegalArgumentException("Can not parse query '" + sql + "'", e);
+        }
+    }
+
+    /**
+     * Executes the template with the values in the order of the parameters of the query. Values for
+     * {@code limit} and {@code offset} have to be {@code Long}s.
+     */
+    public Single<PgRowSet> execute(@NonNull QueryTemplate template, @NonNull Object... bindValues) {
+        return onClientFor(template.getNativeSql(), client -> executeOn(client, template, bindValues));
+    }
 
-            return pgPool.rxPreparedQuery(nativeQuery.nativeSql, bindValuesToTuple(query));
+    Single<PgRowSet> executeOn(PgClient pgClient, QueryTemplate template, Object... bindValues) {
+        if (bindValues.length != template.getParameterCount()) {
+            return Single.error(new IllegalArgumentException("Query '" + template + "' expects " + template.getParameterCount()
+                    + " bind values but got " + bindValues.length));
+        }
+
+        return pgClient.rxPreparedQuery(template.getNativeSql(), new Tuple(new ArrayTuple(Arrays.asList(bindValues))));
+    }
+
+    /**
+     * Executes the query once per element of the batch in a single round trip, see {@link #executeBatch(QueryTemplate, List)}.
+     */
+    public Single<List<Integer>> executeBatch(@NonNull Query query, @NonNull List<? extends List<?>> batch) {
+        final String sql = query.getSQL();
+        try {
+            return executeBatch(sql, nativeSqlCache.nativeSql(sql), query.getBindValues().size(), batch);
         } catch (SQLException e) {
             return Single.error(e);
         }
     }
 
-    private NativeQuery parseNativeQuery(@NonNull Query query) throws SQLException {
-        final List<NativeQuery> nativeQueries = Parser.parseJdbcSql(query.getSQL(), true, true, false, false);
-        return Iterables.getOnlyElement(nativeQueries);
+    /**
+     * Executes the template once per element of the batch in a single round trip.
+     *
+     * @param batch the bind values of every execution, in the order of the parameters of the template
+     * @return the row count of every execution, in the order of the batch
+     */
+    public Single<List<Integer>> executeBatch(@NonNull QueryTemplate template, @NonNull List<? extends List<?>> batch) {
+        return executeBatch(template.getSql(), template.getNativeSql(), template.getParameterCount(), batch);
+    }
+
+    private Single<List<Integer>> executeBatch(String sql, String nativeSql, int parameterCount, List<? extends List<?>> batch) {
+        if (batch.isEmpty()) {
+            return Single.just(ImmutableList.of());
+        }
+
+        final List<Tuple> tuples = new ArrayList<>(batch.size());
+        for (final List<?> bindValues : batch) {
+            if (bindValues.size() != parameterCount) {
+                return Single.error(new IllegalArgumentException("Query '" + sql + "' expects " + parameterCount
+                        + " bind values but got " + bindValues.size()));
+            }
+            tuples.add(new Tuple(new ArrayTuple(ImmutableList.<Object>copyOf(bindValues))));
+        }
+        BATCH_SIZE.observe(tuples.size());
+
+        // Admitted like a single execution, a batch is not prepared just because it runs many times
+        return onClientFor(nativeSql, client -> client.rxPreparedBatch(nativeSql, tuples))
+                .map(pgRowSet -> {
+                    final ImmutableList.Builder<Integer> rowCounts = ImmutableList.builderWithExpectedSize(tuples.size());
+                    for (PgRowSet result = pgRowSet; result != null; result = result.next()) {
+                        rowCounts.add(result.rowCount());
+                    }
+                    return rowCounts.build();
+                });
     }
 
     public Single<Integer> executeForRowCount(@NonNull Query query) {
@@ -63,11 +268,61 @@ public class PostgresqlClient {
                 .map(PgResult::rowCount);
     }
 
+    public Single<Integer> executeForRowCount(@NonNull QueryTemplate template, @NonNull Object... bindValues) {
+        return execute(template, bindValues)
+                .map(PgResult::rowCount);
+    }
+
     public Maybe<Row> executeForSingleRow(@NonNull Query query) {
+        return singleRow(execute(query), query.getSQL());
+    }
+
+    public Maybe<Row> executeForSingleRow(@NonNull QueryTemplate template, @NonNull Object... bindValues) {
+        return singleRow(execute(template, bindValues), template.getSql());
+    }
+
+    /**
+     * Executes an {@code INSERT}, {@code UPDATE} or {@code DELETE} with {@code RETURNING} and maps the returned rows,
+     * so the written rows do not have to be read again.
+     */
+    public <T> Single<List<T>> executeReturning(@NonNull Query query, @NonNull Function<Row, T> mapper) {
         return execute(query)
+                .map(pgRowSet -> mapRows(pgRowSet, mapper));
+    }
+
+    public <T> Single<List<T>> executeReturning(@NonNull QueryTemplate template, @NonNull Function<Row, T> mapper, @NonNull Object... bindValues) {
+        return execute(template, bindValues)
+                .map(pgRowSet -> mapRows(pgRowSet, mapper));
+    }
+
+    /**
+     * Like {@link #executeReturning(Query, Function)} for statements that write at most one row, empty if no row
+     * was written.
+     */
+    public <T> Maybe<T> executeReturningSingle(@NonNull Query query, @NonNull Function<Row, T> mapper) {
+        return executeForSingleRow(query)
+                .map(mapper);
+    }
+
+    public <T> Maybe<T> executeReturningSingle(@NonNull QueryTemplate template, @NonNull Function<Row, T> mapper, @NonNull Object... bindValues) {
+        return executeForSingleRow(template, bindValues)
+                .map(mapper);
+    }
+
+    private static <T> List<T> mapRows(PgRowSet pgRowSet, Function<Row, T> mapper) throws Exception {
+        final ImmutableList.Builder<T> mappedRows = ImmutableList.builderWithExpectedSize(pgRowSet.size());
+        final PgIterator iterator = pgRowSet.iterator();
+        while (iterator.hasNext()) {
+            mappedRows.add(mapper.apply(iterator.next()));
+        }
+        return mappedRows.build();
+    }
+
+    static Maybe<Row> singleRow(Single<PgRowSet> result, String sql) {
+        return result
                 .flatMapMaybe(pgRowSet -> {
                     if (pgRowSet.size() > 1) {
-                        return Maybe.error(new RuntimeException("Expected one result for query '" + query.getSQL() + "' but got " + pgRowSet.size()));
+                        return Maybe.error(new RuntimeException("Expected one result for query '" + sql + "' but got " + pgRowSet.size()));
                     }
 
                     final PgIterator iterator = pgRowSet.iterator();
@@ -79,15 +334,126 @@ public class PostgresqlClient {
                 });
     }
 
-    public Observable<Row> stream(@NonNull Query query, @NonNull Integer offset, @NonNull Integer limit) {
+    /**
+     * Streams the rows of the query through a cursor that fetches {@code postgresql.stream.fetch.size} rows at a time,
+     * see {@link #stream(Query, int)}.
+     */
+    public Flowable<Row> stream(@NonNull Query query) {
+        return stream(query, streamFetchSize);
+    }
+
+    /**
+     * Streams the rows of the query through a cursor. Only {@code fetchSize} rows are fetched at a time and the
+     * next rows are only fetched once the subscriber requested them, so large results are not held in memory.
+     * <p>
+     * The cursor runs in a transaction on a connection of its own, of the main pool if the statement is admitted to
+     * the prepared statement cache and of the pool for unnamed statements otherwise. The transaction is rolled back,
+     * the prepared query is closed and the connection is returned to the pool once the stream completes, fails or
+     * is cancelled.
+     */
+    public Flowable<Row> stream(@NonNull Query query, int fetchSize) {
+        Preconditions.checkArgument(fetchSize > 0, "The fetch size has to be positive but is %s", fetchSize);
+
+        final String nativeSql;
         try {
-            final NativeQuery nativeQuery = parseNativeQuery(query);
+            nativeSql = nativeSqlCache.nativeSql(query.getSQL());
+        } catch (SQLException e) {
+            return Flowable.error(e);
+        }
+        final Tuple bindValues = bindValuesToTuple(query);
+
+        return acquireConnection(poolFor(nativeSql))
+                .flatMapPublisher(connection -> {
+                    final Context context = Vertx.currentContext();
+                    final PgTransaction transaction = connection.begin();
+                    final AtomicReference<PgPreparedQuery> prepared = new AtomicReference<>();
 
+                    return connection.rxPrepare(nativeSql)
+                            .doOnSuccess(prepared::set)
+                            .flatMapPublisher(preparedQuery -> {
+                                // The stream checks the bind values only when it is subscribed and loses that error,
+                                // a cursor checks them right away
+                                preparedQuery.cursor(bindValues);
+                                final PgStream<Row> rows = preparedQuery.createStream(fetchSize, bindValues);
+                                // A fetch that is still running when the stream is closed fails on the closed cursor
+                                // and stalls the rollback, a paused stream only keeps its result
+                                return rows.toFlowable().doOnCancel(rows::pause);
+                            })
+                            .doFinally(() -> onContext(context, () -> release(connection, transaction, prepared.get())));
+                });
+    }
+
+    /**
+     * Runs the work in a transaction on a connection of its own. The transaction is committed once the
+     * returned {@code Single} succeeds and rolled back if it fails, is disposed or one of its statements failed.
+     * <p>
+     * Statements of the transaction that do not depend on each other can be sent without waiting for the previous
+     * results, see {@link PostgresqlTransaction#executeAll(List)}, the connection pipelines them up to
+     * {@code postgresql.pipelining.limit}.
+     */
+    public <T> Single<T> inTransaction(@NonNull Function<PostgresqlTransaction, ? extends SingleSource<T>> work) {
+        return Single.defer(() -> {
+            final PostgresqlTransaction transaction = new PostgresqlTransaction(this);
+
+            return Single.<T>defer(() -> work.apply(transaction))
+                    .flatMap(result -> transaction.commit().toSingleDefault(result))
+                    .onErrorResumeNext(error -> transaction.rollback().andThen(Single.<T>error(error)))
+                    .doOnDispose(() -> transaction.rollback().subscribe());
+        });
+    }
+
+    private static Single<PgConnection> acquireConnection(PgPool pgPool) {
+        return Single.create(emitter -> pgPool.getConnection(result -> {
+            if (result.failed()) {
+                emitter.tryOnError(result.cause());
+            } else if (emitter.isDisposed()) {
+                // Cancelled while waiting for the connection
+                result.result().close();
+            } else {
+                emitter.onSuccess(result.result());
+            }
+        }));
+    }
+
+    /**
+     * Connections only accept commands on the context they were acquired on, a cancellation can arrive on any thread.
+     */
+    static void onContext(@Nullable Context context, Runnable action) {
+        if (context == null || context == Vertx.currentContext()) {
+            action.run();
+        } else {
+            context.runOnContext(ignored -> action.run());
+        }
+    }
+
+    private static void release(PgConnection connection, PgTransaction transaction, @Nullable PgPreparedQuery preparedQuery) {
+        // The cursor only reads, ending the transaction with a rollback is right on every path. The prepared query
+        // is closed after the rollback, closing it during a fetch that is still running would stall the rollback.
+        transaction.rxRollback()
+                .onErrorComplete()
+                .subscribe(() -> {
+                    if (preparedQuery != null) {
+                        preparedQuery.close();
+                    }
+                    connection.close();
+                });
+    }
+
+    /**
+     * Executes a query with jOOQ's integer {@code offset} and {@code limit} and emits its rows once the whole result
+     * has been read.
+     *
+     * @deprecated buffers the whole result, use {@link #stream(Query, int)} to stream the rows through a cursor, or a
+     * {@link #template(Query) template} executed with {@code Long} values for {@code offset} and {@code limit}
+     */
+    @Deprecated
+    public Observable<Row> stream(@NonNull Query query, @NonNull Integer offset, @NonNull Integer limit) {
+        try {
+            final String nativeSql = nativeSqlCache.nativeSql(query.getSQL());
             final List<Object> bindValues = retypeBindValues(query, offset, limit);
+            final Single<PgRowSet> result = onClientFor(nativeSql, client -> client.rxPreparedQuery(nativeSql, new Tuple(new ArrayTuple(bindValues))));
 
-            // I've no idea how the rxStreams are supposed to work, because they leak connections
-            // when you do it like in the docs ....
-            return pgPool.rxPreparedQuery(nativeQuery.nativeSql, new Tuple(new ArrayTuple(bindValues)))
+            return result
                     .flatMapObservable(pgRowSet -> Observable.fromIterable(pgRowSet.getDelegate()))
                     .map(Row::newInstance);
 
@@ -105,38 +471,25 @@ public class PostgresqlClient {
      */
     private List<Object> retypeBindValues(@NonNull Query query, @NonNull Integer offset, @NonNull Integer limit) {
         final List<Object> bindValues = new ArrayList<>(query.getBindValues());
+        // jOOQ renders LIMIT ? OFFSET ?, a zero offset or limit is left out
+        int index = bindValues.size() - 1;
+        if (offset > 0) {
+            retypeBindValue(bindValues, index--, offset, "offset");
+        }
         if (limit > 0) {
-            final int lastElementIndex = bindValues.size() - 1;
-            final Object lastBindValue = bindValues.get(lastElementIndex);
-            if (limit.equals(lastBindValue)) {
-                bindValues.set(lastElementIndex, (long) limit);
-            } else {
-                throw new IllegalStateException("Expecting limit to be last value in the bind values, but it is " + lastBindValue);
-            }
-
-            if (offset > 0) {
-                final int secondLastElementIndex = lastElementIndex - 1;
-                final Object secondLastBindValue = bindValues.get(secondLastElementIndex);
-                if (offset.equals(secondLastBindValue)) {
-                    bindValues.set(secondLastElementIndex, (long) offset);
-                } else {
-                    throw new IllegalThreadStateException("Expecting offset to be second last bind value, but it is " + secondLastBindValue);
-                }
-            }
-        } else {
-            if (offset > 0) {
-                final int lastElementIndex = bindValues.size() - 1;
-                final Object lastBindValue = bindValues.get(lastElementIndex);
-                if (offset.equals(lastBindValue)) {
-                    bindValues.set(lastElementIndex, (long) offset);
-                } else {
-                    throw new IllegalStateException("Expecting limit to be last value in the bind values, but it is " + lastBindValue);
-                }
-            }
+            retypeBindValue(bindValues, index, limit, "limit");
         }
         return bindValues;
     }
 
+    private static void retypeBindValue(List<Object> bindValues, int index, Integer value, String name) {
+        final Object bindValue = bindValues.get(index);
+        if (!value.equals(bindValue)) {
+            throw new IllegalStateException("Expecting " + name + " at bind value " + index + ", but it is " + bindValue);
+        }
+        bindValues.set(index, value.longValue());
+    }
+
     private Tuple bindValuesToTuple(Query query) {
         return new Tuple(new ArrayTuple(query.getBindValues()));
     }
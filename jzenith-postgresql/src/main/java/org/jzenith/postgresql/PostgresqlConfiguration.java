@@ -18,6 +18,8 @@ package org.jzenith.postgresql;
 import io.reactiverse.pgclient.PgConnectOptions;
 import org.jzenith.core.configuration.ConfigDefault;
 
+import java.time.Duration;
+
 public interface PostgresqlConfiguration {
 
     @ConfigDefault("5432")
@@ -37,4 +39,31 @@ public interface PostgresqlConfiguration {
 
     @ConfigDefault("4")
     int getPoolSize();
+
+    @ConfigDefault("1s")
+    Duration getConnectTimeout();
+
+    @ConfigDefault("1000")
+    long getSqlCacheSize();
+
+    @ConfigDefault("true")
+    boolean getPreparedStatementCache();
+
+    @ConfigDefault("256")
+    int getPreparedStatementCacheSize();
+
+    @ConfigDefault("2048")
+    int getPreparedStatementCacheSqlLimit();
+
+    @ConfigDefault("2")
+    int getUnnamedStatementPoolSize();
+
+    @ConfigDefault("100")
+    int getStreamFetchSize();
+
+    @ConfigDefault("2")
+    int getCopyPoolSize();
+
+    @ConfigDefault("256")
+    int getPipeliningLimit();
 }
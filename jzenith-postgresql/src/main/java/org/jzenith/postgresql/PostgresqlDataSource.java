@@ -0,0 +1,38 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import org.postgresql.ds.PGSimpleDataSource;
+
+/**
+ * JDBC access for the things the reactive client can not do, i.e. Flyway migrations and COPY.
+ */
+final class PostgresqlDataSource {
+
+    private PostgresqlDataSource() {
+    }
+
+    static PGSimpleDataSource create(PostgresqlConfiguration configuration) {
+        final PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setPortNumber(configuration.getPort());
+        dataSource.setServerName(configuration.getHost());
+        dataSource.setDatabaseName(configuration.getDatabase());
+        dataSource.setUser(configuration.getUsername());
+        dataSource.setPassword(configuration.getPassword());
+
+        return dataSource;
+    }
+}
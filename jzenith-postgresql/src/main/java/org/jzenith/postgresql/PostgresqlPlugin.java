@@ -20,7 +20,9 @@ import com.google.inject.Injector;
 import com.google.inject.Module;
 import io.vertx.core.Vertx;
 import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
 import org.jzenith.core.AbstractPlugin;
+import org.jzenith.core.metrics.StartupReport;
 import org.jzenith.core.util.CompletableHandler;
 
 import java.util.List;
@@ -31,6 +33,8 @@ import static org.jzenith.core.util.VerticleDeploymentUtil.forGuiceVerticleLoade
 @Slf4j
 public class PostgresqlPlugin extends AbstractPlugin {
 
+    static final String NAME = "postgresql";
+
     private PostgresqlPlugin() {
     }
 
@@ -38,6 +42,11 @@ public class PostgresqlPlugin extends AbstractPlugin {
         return new PostgresqlPlugin();
     }
 
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
     @Override
     protected List<Module> getModules() {
         return ImmutableList.of(new PostgresqlBinder());
@@ -49,6 +58,12 @@ public class PostgresqlPlugin extends AbstractPlugin {
             log.debug("jZenith SQL is starting");
         }
 
+        final StartupReport startupReport = injector.getInstance(StartupReport.class);
+        final DSLContext context = injector.getInstance(DSLContext.class);
+
+        // Initialize jOOQ on startup, because that takes a while
+        startupReport.measure(NAME, "jooq_warmup", () -> context.select().from("1").getSQL());
+
         final Vertx vertx = injector.getInstance(Vertx.class);
 
         final CompletableHandler<String> completableHandler = new CompletableHandler<>();
@@ -57,5 +72,12 @@ public class PostgresqlPlugin extends AbstractPlugin {
         return completableHandler;
     }
 
+    @Override
+    protected CompletableFuture<String> stop(Injector injector) {
+        injector.getInstance(PostgresqlResources.class).close();
+
+        return CompletableFuture.completedFuture("Done");
+    }
+
 
 }
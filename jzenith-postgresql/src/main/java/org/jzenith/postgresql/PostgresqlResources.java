@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * The resources of the plugin that have to be released on stop. Pools and executors are only created when they
+ * are first used, so stopping must not create them just to close them again.
+ */
+final class PostgresqlResources {
+
+    private final Deque<Runnable> closers = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Registers a created resource, resources are closed in the reverse order of their registration.
+     */
+    void register(Runnable closer) {
+        closers.push(closer);
+    }
+
+    void close() {
+        Runnable closer;
+        while ((closer = closers.poll()) != null) {
+            closer.run();
+        }
+    }
+}
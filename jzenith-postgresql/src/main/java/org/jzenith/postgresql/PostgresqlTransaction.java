@@ -0,0 +1,183 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import com.google.common.collect.ImmutableList;
+import io.reactiverse.reactivex.pgclient.PgConnection;
+import io.reactiverse.reactivex.pgclient.PgResult;
+import io.reactiverse.reactivex.pgclient.PgRowSet;
+import io.reactiverse.reactivex.pgclient.Row;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import lombok.NonNull;
+import org.jooq.Query;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * The statements of one transaction, see {@link PostgresqlClient#inTransaction(io.reactivex.functions.Function)}.
+ * All statements run on the connection pinned for the transaction, a failed statement rolls the whole transaction
+ * back.
+ * <p>
+ * The connection is taken when the first statement runs: from the main pool if that statement is admitted to the
+ * prepared statement cache, from the pool for unnamed statements otherwise. Later statements run on the same
+ * connection, so on a connection of the main pool they are prepared and kept even if they are not admitted.
+ */
+public class PostgresqlTransaction {
+
+    private final PostgresqlClient client;
+
+    @Nullable
+    private Single<PgConnection> connection;
+    private boolean ended;
+
+    @Nullable
+    private volatile Context context;
+
+    @Nullable
+    private volatile Throwable failure;
+
+    PostgresqlTransaction(PostgresqlClient client) {
+        this.client = client;
+    }
+
+    public Single<PgRowSet> execute(@NonNull Query query) {
+        return Single.defer(() -> connection(client.admit(query)))
+                .flatMap(pgConnection -> client.executeOn(pgConnection, query))
+                .doOnError(this::failed);
+    }
+
+    public Single<PgRowSet> execute(@NonNull QueryTemplate template, @NonNull Object... bindValues) {
+        return Single.defer(() -> connection(client.admit(template)))
+                .flatMap(pgConnection -> client.executeOn(pgConnection, template, bindValues))
+                .doOnError(this::failed);
+    }
+
+    /**
+     * Sends all queries at once without waiting for the previous results, so independent statements cost about
+     * two round trips, one to prepare the statements that are new to the connection and one to execute them. The
+     * queries are executed in order.
+     *
+     * @return the results in the order of the queries
+     */
+    public Single<List<PgRowSet>> executeAll(@NonNull List<? extends Query> queries) {
+        if (queries.isEmpty()) {
+            return Single.just(ImmutableList.of());
+        }
+
+        return Single.defer(() -> connection(admitAll(queries)))
+                .flatMap(pgConnection -> client.executeAllOn(pgConnection, queries))
+                .doOnError(this::failed);
+    }
+
+    public Single<Integer> executeForRowCount(@NonNull Query query) {
+        return execute(query)
+                .map(PgResult::rowCount);
+    }
+
+    public Single<Integer> executeForRowCount(@NonNull QueryTemplate template, @NonNull Object... bindValues) {
+        return execute(template, bindValues)
+                .map(PgResult::rowCount);
+    }
+
+    public Maybe<Row> executeForSingleRow(@NonNull Query query) {
+        return PostgresqlClient.singleRow(execute(query), query.getSQL());
+    }
+
+    public Maybe<Row> executeForSingleRow(@NonNull QueryTemplate template, @NonNull Object... bindValues) {
+        return PostgresqlClient.singleRow(execute(template, bindValues), template.getSql());
+    }
+
+    /**
+     * Commits the transaction and returns its connection to the pool, or rolls it back if one of its statements
+     * failed.
+     */
+    Completable commit() {
+        final Throwable statementFailure = failure;
+        if (statementFailure != null) {
+            return rollback().andThen(Completable.error(statementFailure));
+        }
+
+        return end("COMMIT");
+    }
+
+    /**
+     * Rolls the transaction back and returns its connection to the pool, never fails.
+     */
+    Completable rollback() {
+        return end("ROLLBACK").onErrorComplete();
+    }
+
+    /**
+     * Every query counts as an execution, the transaction takes a connection of the main pool only if all of them
+     * are admitted.
+     */
+    private boolean admitAll(List<? extends Query> queries) {
+        boolean admitted = true;
+        for (final Query query : queries) {
+            admitted &= client.admit(query);
+        }
+
+        return admitted;
+    }
+
+    private synchronized Single<PgConnection> connection(boolean admitted) {
+        if (ended) {
+            return Single.error(new IllegalStateException("The transaction has already ended"));
+        }
+        if (connection == null) {
+            connection = client.begin(admitted)
+                    .doOnSuccess(pgConnection -> context = Vertx.currentContext())
+                    .cache();
+        }
+
+        return connection;
+    }
+
+    /**
+     * Ends the transaction once, a commit that fails and a dispose both roll back.
+     */
+    private Completable end(String command) {
+        final Single<PgConnection> pinnedConnection;
+        synchronized (this) {
+            if (ended) {
+                return Completable.complete();
+            }
+            ended = true;
+            pinnedConnection = connection;
+        }
+        if (pinnedConnection == null) {
+            return Completable.complete();
+        }
+
+        // The end can be reached on any thread, e.g. when the transaction is disposed
+        return pinnedConnection.flatMapCompletable(pgConnection -> Completable.create(emitter -> PostgresqlClient.onContext(context,
+                () -> pgConnection.rxQuery(command)
+                        .toCompletable()
+                        .doFinally(pgConnection::close)
+                        .subscribe(emitter::onComplete, emitter::tryOnError))));
+    }
+
+    private void failed(Throwable error) {
+        if (failure == null) {
+            failure = error;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import io.prometheus.client.Counter;
+
+/**
+ * Decides which statements are executed as prepared statements and thus end up in the prepared statement
+ * cache of the pooled connections.
+ * <p>
+ * At most {@code maximumSize} statements that are not longer than {@code sqlLimit} are admitted, the least recently
+ * used one is evicted to make room. A statement is only admitted on its second execution, so statements that run
+ * once do not evict the ones that run all the time. Statements that are not admitted run as unnamed statements,
+ * see {@link UnnamedStatementPool}.
+ * <p>
+ * reactive-pg-client can not close the statements of its cache, so an evicted statement is no longer executed as
+ * prepared statement but stays prepared on the connections that executed it until they are closed.
+ */
+class PreparedStatementAdmission {
+
+    private static final Counter LOOKUPS = Counter.build()
+            .name("postgresql_prepared_statement_cache_total")
+            .help("Lookups of statements in the prepared statement cache by result (hit, miss or rejected).")
+            .labelNames("result")
+            .register();
+
+    private static final Counter EVICTIONS = Counter.build()
+            .name("postgresql_prepared_statement_cache_evictions_total")
+            .help("Statements evicted from the prepared statement cache.")
+            .register();
+
+    private static final Counter.Child HITS = LOOKUPS.labels("hit");
+    private static final Counter.Child MISSES = LOOKUPS.labels("miss");
+    private static final Counter.Child REJECTIONS = LOOKUPS.labels("rejected");
+
+    private final boolean enabled;
+    private final int sqlLimit;
+    private final Cache<String, Boolean> admittedStatements;
+    // Statements executed once recently, admitted on their next execution
+    private final Cache<String, Boolean> candidates;
+
+    PreparedStatementAdmission(boolean enabled, int maximumSize, int sqlLimit) {
+        this.enabled = enabled;
+        this.sqlLimit = sqlLimit;
+        this.admittedStatements = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .removalListener(PreparedStatementAdmission::removed)
+                .build();
+        this.candidates = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    private static void removed(RemovalNotification<String, Boolean> notification) {
+        if (notification.wasEvicted()) {
+            EVICTIONS.inc();
+        }
+    }
+
+    /**
+     * @return whether the statement is executed as prepared statement, always false without a prepared statement cache
+     */
+    boolean admit(String nativeSql) {
+        if (!enabled) {
+            return false;
+        }
+        if (nativeSql.length() > sqlLimit) {
+            REJECTIONS.inc();
+            return false;
+        }
+        if (admittedStatements.getIfPresent(nativeSql) != null) {
+            HITS.inc();
+            return true;
+        }
+
+        if (candidates.asMap().remove(nativeSql) != null) {
+            admittedStatements.put(nativeSql, Boolean.TRUE);
+            MISSES.inc();
+            return true;
+        }
+        candidates.put(nativeSql, Boolean.TRUE);
+        REJECTIONS.inc();
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import lombok.Getter;
+
+/**
+ * A query authored with jOOQ that has been rendered and converted to native SQL once, see
+ * {@link PostgresqlClient#template(org.jooq.Query)}. Executing it only needs the bind values.
+ */
+@Getter
+public final class QueryTemplate {
+
+    /**
+     * The SQL as rendered by jOOQ
+     */
+    private final String sql;
+
+    private final String nativeSql;
+
+    private final int parameterCount;
+
+    QueryTemplate(String sql, String nativeSql, int parameterCount) {
+        this.sql = sql;
+        this.nativeSql = nativeSql;
+        this.parameterCount = parameterCount;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import io.reactiverse.reactivex.pgclient.PgPool;
+
+/**
+ * The connections for statements that are not admitted to the prepared statement cache, see
+ * {@link PreparedStatementAdmission}.
+ * <p>
+ * Its connections do not cache prepared statements, so every statement runs as unnamed statement over the
+ * extended protocol: it is parsed on every execution, its values are still sent apart from the SQL, and nothing
+ * is kept on the connection. Without a prepared statement cache the main pool already works like that and is used
+ * instead of a pool of its own.
+ */
+final class UnnamedStatementPool {
+
+    private final PgPool pgPool;
+    private final boolean ownPool;
+
+    UnnamedStatementPool(PgPool pgPool, boolean ownPool) {
+        this.pgPool = pgPool;
+        this.ownPool = ownPool;
+    }
+
+    PgPool get() {
+        return pgPool;
+    }
+
+    void close() {
+        if (ownPool) {
+            pgPool.close();
+        }
+    }
+}
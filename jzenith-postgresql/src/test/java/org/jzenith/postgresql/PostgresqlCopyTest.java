@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PostgresqlCopyTest {
+
+    @Test
+    public void testPlainValuesAreNotQuoted() {
+        assertEquals("1,Alice,true\n", csvRow(1, "Alice", true));
+    }
+
+    @Test
+    public void testNullIsWrittenAsNull() {
+        assertEquals("1,,Alice\n", csvRow(1, null, "Alice"));
+    }
+
+    @Test
+    public void testEmptyStringIsQuoted() {
+        assertEquals("1,\"\"\n", csvRow(1, ""));
+    }
+
+    @Test
+    public void testSpecialCharactersAreQuoted() {
+        assertEquals("\"a,b\",\"a\nb\",\"a\rb\"\n", csvRow("a,b", "a\nb", "a\rb"));
+    }
+
+    @Test
+    public void testQuotesAreDoubled() {
+        assertEquals("\"say \"\"hi\"\"\"\n", csvRow("say \"hi\""));
+    }
+
+    @Test
+    public void testEndOfDataMarkerIsQuoted() {
+        assertEquals("1,\"\\.\"\n", csvRow(1, "\\."));
+        assertEquals("1,a\\.\n", csvRow(1, "a\\."));
+    }
+
+    @Test
+    public void testNonAsciiIsEncodedAsUtf8() {
+        assertEquals("Jürgen\n", csvRow("Jürgen"));
+        assertEquals(8, PostgresqlCopy.csvRow("Jürgen").length());
+    }
+
+    private static String csvRow(Object... values) {
+        return PostgresqlCopy.csvRow(values).toString("UTF-8");
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.postgresql;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PreparedStatementAdmissionTest {
+
+    private static final String SELECT_USER = "select * from users where id = $1";
+    private static final String SELECT_GROUP = "select * from groups where id = $1";
+    private static final String SELECT_ROLE = "select * from roles where id = $1";
+
+    @Test
+    public void testAdmitsOnSecondExecution() {
+        final PreparedStatementAdmission admission = new PreparedStatementAdmission(true, 2, 100);
+
+        assertFalse(admission.admit(SELECT_USER));
+        assertTrue(admission.admit(SELECT_USER));
+        assertTrue(admission.admit(SELECT_USER));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final PreparedStatementAdmission admission = new PreparedStatementAdmission(true, 2, 100);
+        admitTwice(admission, SELECT_USER);
+        admitTwice(admission, SELECT_GROUP);
+
+        // Used more recently than the groups, so the groups make room for the roles
+        assertTrue(admission.admit(SELECT_USER));
+        admitTwice(admission, SELECT_ROLE);
+
+        assertTrue(admission.admit(SELECT_USER));
+        assertTrue(admission.admit(SELECT_ROLE));
+        assertFalse(admission.admit(SELECT_GROUP));
+        assertTrue(admission.admit(SELECT_GROUP));
+    }
+
+    @Test
+    public void testSingleExecutionsDoNotEvict() {
+        final PreparedStatementAdmission admission = new PreparedStatementAdmission(true, 2, 100);
+        admitTwice(admission, SELECT_USER);
+        admitTwice(admission, SELECT_GROUP);
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(admission.admit("select * from users where id = " + i));
+        }
+
+        assertTrue(admission.admit(SELECT_USER));
+        assertTrue(admission.admit(SELECT_GROUP));
+    }
+
+    @Test
+    public void testRejectsStatementsBeyondSqlLimit() {
+        final PreparedStatementAdmission admission = new PreparedStatementAdmission(true, 2, SELECT_USER.length());
+        final String longStatement = SELECT_USER + " and " + Strings.repeat("1 = 1 and ", 10) + "true";
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(admission.admit(longStatement));
+        }
+        admitTwice(admission, SELECT_USER);
+    }
+
+    @Test
+    public void testDisabled() {
+        final PreparedStatementAdmission admission = new PreparedStatementAdmission(false, 2, 100);
+
+        assertFalse(admission.admit(SELECT_USER));
+        assertFalse(admission.admit(SELECT_USER));
+    }
+
+    private static void admitTwice(PreparedStatementAdmission admission, String nativeSql) {
+        assertFalse(admission.admit(nativeSql));
+        assertTrue(admission.admit(nativeSql));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.resteasy.plugins.server.vertx.VertxResteasyDeployment;
+import org.jzenith.core.util.CompletableHandler;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Serves the administrative resources (metrics, health and docs) on a port and a Vert.x instance of their own.
+ * <p>
+ * The admin server has its own event loop and worker pool, so health checks and scrapes stay responsive
+ * while the event loops of the application are busy. Its requests are neither drained on shutdown nor
+ * counted as application requests.
+ */
+@Slf4j
+class AdminServer {
+
+    private static final int EVENT_LOOP_POOL_SIZE = 1;
+    private static final int WORKER_POOL_SIZE = 2;
+
+    private final Vertx vertx;
+    private final RestConfiguration configuration;
+    private final VertxResteasyDeployment deployment;
+
+    AdminServer(VertxOptions applicationOptions, RestConfiguration configuration, VertxResteasyDeployment deployment) {
+        this.vertx = Vertx.vertx(new VertxOptions()
+                .setEventLoopPoolSize(EVENT_LOOP_POOL_SIZE)
+                .setWorkerPoolSize(WORKER_POOL_SIZE)
+                .setInternalBlockingPoolSize(WORKER_POOL_SIZE)
+                .setPreferNativeTransport(applicationOptions.getPreferNativeTransport()));
+        this.configuration = configuration;
+        this.deployment = deployment;
+    }
+
+    CompletableFuture<HttpServer> start() {
+        final HttpServerOptions serverOptions = new HttpServerOptions()
+                .setTcpNoDelay(configuration.getTcpNoDelay());
+
+        final CompletableHandler<HttpServer> listening = new CompletableHandler<>();
+        vertx.createHttpServer(serverOptions)
+                .requestHandler(new GuiceVertxRequestHandler(vertx, deployment, new InFlightRequests()))
+                .listen(configuration.getAdminPort(), configuration.getAdminHost(), listening.handler());
+
+        return listening.thenApply(server -> {
+            log.info("jZenith Admin Server started on port {}", server.actualPort());
+            return server;
+        });
+    }
+
+    CompletableFuture<Void> stop() {
+        final CompletableHandler<Void> closed = new CompletableHandler<>();
+        vertx.close(closed.handler());
+        return closed;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest;
+
+import io.vertx.core.buffer.Buffer;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes Vert.x {@link Buffer} entities as they are, without copying them into an intermediate array.
+ */
+public class BufferMessageBodyWriter implements MessageBodyWriter<Buffer> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return Buffer.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(Buffer buffer, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return buffer.length();
+    }
+
+    @Override
+    public void writeTo(Buffer buffer, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        // getByteBuf() returns a view sharing the content, so cached buffers can be written concurrently
+        buffer.getByteBuf().getBytes(0, entityStream, buffer.length());
+    }
+}
@@ -16,18 +16,34 @@
 package org.jzenith.rest;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServerRequest;
 import org.jboss.resteasy.plugins.server.vertx.VertxRequestHandler;
 import org.jboss.resteasy.spi.ResteasyDeployment;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
+import javax.ws.rs.core.Response;
+
 public class GuiceVertxRequestHandler extends VertxRequestHandler {
-    public GuiceVertxRequestHandler(Vertx vertx, ResteasyDeployment deployment) {
+
+    private final InFlightRequests inFlightRequests;
+
+    GuiceVertxRequestHandler(Vertx vertx, ResteasyDeployment deployment, InFlightRequests inFlightRequests) {
         super(vertx, deployment);
+        this.inFlightRequests = inFlightRequests;
     }
 
     @Override
     public void handle(HttpServerRequest request) {
+        if (!inFlightRequests.tryStart()) {
+            request.response()
+                    .setStatusCode(Response.Status.SERVICE_UNAVAILABLE.getStatusCode())
+                    .putHeader(HttpHeaders.CONNECTION, HttpHeaders.CLOSE)
+                    .end();
+            return;
+        }
+        request.response().endHandler(ignored -> inFlightRequests.finish());
+
         ResteasyProviderFactory.getContextDataMap().put(HttpServerRequest.class, request);
         super.handle(request);
     }
@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the requests that are currently processed, so that they can be drained on shutdown.
+ */
+class InFlightRequests {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+    private volatile boolean draining;
+
+    /**
+     * @return {@code false} if the request must be rejected, because the server is draining
+     */
+    boolean tryStart() {
+        inFlight.incrementAndGet();
+        if (draining) {
+            finish();
+            return false;
+        }
+        return true;
+    }
+
+    void finish() {
+        if (inFlight.decrementAndGet() == 0 && draining) {
+            drained.complete(null);
+        }
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Rejects all further requests and waits for the ones in flight.
+     *
+     * @return completes with {@code true} once all requests finished or with {@code false} once the timeout passed
+     */
+    CompletableFuture<Boolean> drain(Duration timeout) {
+        draining = true;
+        if (inFlight.get() == 0) {
+            drained.complete(null);
+        }
+
+        return drained.thenApply(ignored -> Boolean.TRUE)
+                .completeOnTimeout(Boolean.FALSE, timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -27,6 +27,7 @@ import org.jboss.resteasy.plugins.guice.ext.RequestScopeModule;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.jzenith.core.configuration.ConfigurationProvider;
 import org.jzenith.rest.metrics.MetricsFeature;
+import org.jzenith.rest.metrics.ScrapeCache;
 
 public class RestBinder extends AbstractModule {
 
@@ -36,6 +37,8 @@ public class RestBinder extends AbstractModule {
 
         bind(HttpServerRequest.class).toProvider(new ResteasyContextProvider<>(HttpServerRequest.class)).in(RequestScoped.class);
         bind(RestConfiguration.class).toProvider(new ConfigurationProvider<>(RestConfiguration.class)).in(Singleton.class);
+        bind(InFlightRequests.class).in(Singleton.class);
+        bind(ScrapeCache.class).in(Singleton.class);
 
     }
 
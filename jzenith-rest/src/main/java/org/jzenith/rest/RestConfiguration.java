@@ -17,6 +17,9 @@ package org.jzenith.rest;
 
 import org.jzenith.core.configuration.ConfigDefault;
 
+import java.time.Duration;
+import java.util.List;
+
 public interface RestConfiguration {
 
     @ConfigDefault("8080")
@@ -25,5 +28,37 @@ public interface RestConfiguration {
     @ConfigDefault("localhost")
     String getHost();
 
+    @ConfigDefault("0")
+    int getInstances();
+
+    @ConfigDefault("10s")
+    Duration getShutdownTimeout();
+
+    @ConfigDefault("false")
+    boolean getReusePort();
+
+    @ConfigDefault("true")
+    boolean getTcpFastOpen();
+
+    @ConfigDefault("true")
+    boolean getTcpNoDelay();
+
+    @ConfigDefault("false")
+    boolean getLatencyHistogram();
+
+    @ConfigDefault("1m")
+    Duration getLatencyWindow();
+
+    @ConfigDefault("0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10")
+    List<Double> getLatencyBuckets();
+
+    @ConfigDefault("1s")
+    Duration getMetricsCacheTtl();
+
+    @ConfigDefault("0")
+    int getAdminPort();
+
+    @ConfigDefault("localhost")
+    String getAdminHost();
 
 }
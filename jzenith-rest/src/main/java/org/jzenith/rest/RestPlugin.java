@@ -16,14 +16,18 @@
 package org.jzenith.rest;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.inject.AbstractModule;
 import com.google.inject.Injector;
 import com.google.inject.Module;
+import com.google.inject.Singleton;
 import io.swagger.v3.jaxrs2.integration.resources.OpenApiResource;
 import io.vertx.core.Vertx;
-import io.vertx.core.http.HttpServer;
+import io.vertx.core.VertxOptions;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.jboss.resteasy.plugins.guice.GuiceResourceFactory;
@@ -32,6 +36,8 @@ import org.jboss.resteasy.plugins.server.vertx.VertxResourceFactory;
 import org.jboss.resteasy.plugins.server.vertx.VertxResteasyDeployment;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.jzenith.core.AbstractPlugin;
+import org.jzenith.core.metrics.StartupReport;
+import org.jzenith.core.util.CompletableHandler;
 import org.jzenith.rest.docs.CustomOpenApiResource;
 import org.jzenith.rest.exception.ConstantMessageExceptionMapping;
 import org.jzenith.rest.exception.ExceptionMapping;
@@ -40,12 +46,18 @@ import org.jzenith.rest.health.HealthCheckResource;
 import org.jzenith.rest.metrics.MetricsFeature;
 import org.jzenith.rest.metrics.PrometheusResource;
 
+import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.validation.ValidationException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.jzenith.core.util.VerticleDeploymentUtil.forGuiceVerticleLoader;
 
 @Slf4j
 public class RestPlugin extends AbstractPlugin {
@@ -55,6 +67,9 @@ public class RestPlugin extends AbstractPlugin {
 
     private final List<Class<?>> resources;
     private final Map<Class<? extends Exception>, ExceptionMapping<?>> exceptionMappings = Maps.newHashMap();
+    private final Map<Class<?>, double[]> latencyBuckets = Maps.newHashMap();
+    private volatile String deploymentId;
+    private volatile AdminServer adminServer;
 
     public RestPlugin(Collection<Class<?>> resources) {
         this.resources = ImmutableList.copyOf(Iterables.concat(resources, DEFAULT_RESOURCES));
@@ -70,7 +85,12 @@ public class RestPlugin extends AbstractPlugin {
 
     @Override
     protected List<Module> getModules() {
-        return ImmutableList.copyOf(Iterables.concat(MODULES, ImmutableList.of(new ResourceModule(resources))));
+        return ImmutableList.copyOf(Iterables.concat(MODULES, ImmutableList.of(new ResourceModule(resources), new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(VertxResteasyDeployment.class).toProvider(new ResteasyDeploymentProvider()).in(Singleton.class);
+            }
+        })));
     }
 
     @Override
@@ -78,41 +98,151 @@ public class RestPlugin extends AbstractPlugin {
         if (log.isDebugEnabled()) {
             log.debug("jZenith Rest is starting and registering the following resources:\n{}", Joiner.on('\n').join(resources));
         }
+        final StartupReport startupReport = injector.getInstance(StartupReport.class);
+        startupReport.measure(getName(), "resteasy_deployment", () -> injector.getInstance(VertxResteasyDeployment.class));
+
+        final Vertx vertx = injector.getInstance(Vertx.class);
+        final RestConfiguration restConfiguration = injector.getInstance(RestConfiguration.class);
+        final int instances = restConfiguration.getInstances() > 0
+                ? restConfiguration.getInstances()
+                : injector.getInstance(VertxOptions.class).getEventLoopPoolSize();
+
+        final Stopwatch listenStopwatch = Stopwatch.createStarted();
+        final CompletableHandler<String> completableHandler = new CompletableHandler<>();
+        vertx.deployVerticle("java-guice:" + RestVerticle.class.getName(), forGuiceVerticleLoader().setInstances(instances), completableHandler.handler());
+
+        return startAdminServer(injector)
+                .thenCompose(ignored -> completableHandler)
+                .thenApply(deploymentId -> {
+                    startupReport.record(getName(), "http_server_listen", listenStopwatch.elapsed());
+                    log.info("jZenith Server started on port {} with {} instances", restConfiguration.getPort(), instances);
+
+                    this.deploymentId = deploymentId;
+                    return deploymentId;
+                })
+                .handle((deploymentId, error) -> error == null
+                        ? CompletableFuture.completedFuture(deploymentId)
+                        : closeAfterFailedStart(error))
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<String> closeAfterFailedStart(Throwable error) {
+        // A plugin that failed to start is not stopped, the admin server runs on a Vert.x of its own and would keep the JVM alive
+        return stopAdminServer()
+                .handle((ignored, stopError) -> {
+                    if (stopError != null) {
+                        log.warn("Closing the admin server after a failed start failed", stopError);
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> CompletableFuture.failedFuture(error));
+    }
+
+    private CompletableFuture<?> startAdminServer(Injector injector) {
+        final RestConfiguration restConfiguration = injector.getInstance(RestConfiguration.class);
+        if (restConfiguration.getAdminPort() <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Stopwatch listenStopwatch = Stopwatch.createStarted();
+        final VertxResteasyDeployment adminDeployment = createDeployment(injector, DEFAULT_RESOURCES, MetricsFeature.forAdminServer());
+        final AdminServer server = new AdminServer(injector.getInstance(VertxOptions.class), restConfiguration, adminDeployment);
+        this.adminServer = server;
+
+        return server.start()
+                .thenAccept(ignored -> injector.getInstance(StartupReport.class).record(getName(), "admin_server_listen", listenStopwatch.elapsed()));
+    }
+
+    @Override
+    protected CompletableFuture<String> stop(Injector injector) {
+        final String runningDeploymentId = deploymentId;
+        if (runningDeploymentId == null) {
+            return stopAdminServer().thenApply(ignored -> "Not started");
+        }
+
+        final InFlightRequests inFlightRequests = injector.getInstance(InFlightRequests.class);
+        final Duration shutdownTimeout = injector.getInstance(RestConfiguration.class).getShutdownTimeout();
+        log.info("jZenith Server is draining {} in-flight requests", inFlightRequests.getInFlight());
+
+        return inFlightRequests.drain(shutdownTimeout)
+                .thenCompose(drained -> {
+                    if (!drained) {
+                        log.warn("jZenith Server closes with {} requests still in flight after {}", inFlightRequests.getInFlight(), shutdownTimeout);
+                    }
+
+                    // Undeploying closes the HTTP servers of all instances
+                    final CompletableHandler<Void> undeployed = new CompletableHandler<>();
+                    injector.getInstance(Vertx.class).undeploy(runningDeploymentId, undeployed.handler());
+                    return undeployed;
+                })
+                .thenCompose(ignored -> stopAdminServer())
+                .thenApply(ignored -> "Done");
+    }
+
+    private CompletableFuture<Void> stopAdminServer() {
+        // The admin server keeps answering health checks and scrapes until the application server is closed
+        final AdminServer runningAdminServer = adminServer;
+        return runningAdminServer == null ? CompletableFuture.completedFuture(null) : runningAdminServer.stop();
+    }
+
+    private VertxResteasyDeployment createApplicationDeployment(Injector injector) {
+        final RestConfiguration restConfiguration = injector.getInstance(RestConfiguration.class);
+        final List<Class<?>> applicationResources = restConfiguration.getAdminPort() > 0
+                ? resources.stream().filter(resource -> !DEFAULT_RESOURCES.contains(resource)).collect(ImmutableList.toImmutableList())
+                : resources;
+
+        return createDeployment(injector, applicationResources, new MetricsFeature(restConfiguration, latencyBuckets));
+    }
+
+    private VertxResteasyDeployment createDeployment(Injector injector, List<Class<?>> deploymentResources, MetricsFeature metricsFeature) {
         final VertxResteasyDeployment deployment = new VertxResteasyDeployment();
         deployment.start();
         final ResteasyProviderFactory providerFactory = deployment.getProviderFactory();
 
-        providerFactory.getServerDynamicFeatures().add(new MetricsFeature());
+        providerFactory.getServerDynamicFeatures().add(metricsFeature);
 
         exceptionMappings.forEach((clz, exceptionMapping) -> providerFactory.getExceptionMappers().put(clz, exceptionMapping.toExceptionHandler()));
 
         final VertxRegistry registry = deployment.getRegistry();
 
-        resources.forEach(resourceClass ->
+        deploymentResources.forEach(resourceClass ->
             registry.addResourceFactory(new VertxResourceFactory(new GuiceResourceFactory(injector.getProvider(resourceClass), resourceClass))));
 
         providerFactory.registerProviderInstance(new JacksonConfig());
+        providerFactory.registerProviderInstance(new BufferMessageBodyWriter());
+
+        return deployment;
+    }
 
-        final CompletableFuture<String> completableFuture = new CompletableFuture<>();
+    private class ResteasyDeploymentProvider implements Provider<VertxResteasyDeployment> {
 
-        final Vertx vertx = injector.getInstance(Vertx.class);
-        final RestConfiguration restConfiguration = injector.getInstance(RestConfiguration.class);
+        @Inject
+        private Injector injector;
 
-        final GuiceVertxRequestHandler handler = new GuiceVertxRequestHandler(vertx, deployment);
-        vertx.createHttpServer()
-                .requestHandler(handler)
-                .listen(restConfiguration.getPort(), restConfiguration.getHost(), ar -> {
-                    if (ar.succeeded()) {
-                        final HttpServer server = ar.result();
-                        log.info("jZenith Server started on port " + server.actualPort());
-                        completableFuture.complete("Done");
-                    } else {
-                        completableFuture.completeExceptionally(ar.cause());
-                    }
-                });
+        @Override
+        public VertxResteasyDeployment get() {
+            return createApplicationDeployment(injector);
+        }
+    }
 
+    /**
+     * Starts the REST server only after the given plugins are started, e.g. after database migrations ran.
+     */
+    @SafeVarargs
+    public final RestPlugin dependsOn(@NonNull Class<? extends AbstractPlugin>... plugins) {
+        addDependencies(plugins);
 
-        return completableFuture;
+        return this;
+    }
+
+    /**
+     * Uses the given bucket layout (in seconds) for the latency histogram of the resource, see {@code rest.latency.histogram}.
+     */
+    public RestPlugin withLatencyBuckets(@NonNull Class<?> resource, @NonNull double... buckets) {
+        Preconditions.checkArgument(buckets.length > 0, "You need to provide at least one bucket");
+        latencyBuckets.put(resource, buckets.clone());
+
+        return this;
     }
 
     public RestPlugin withMapping(@NonNull Class<? extends Exception> exception, int statusCode) {
@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpServerOptions;
+import org.jboss.resteasy.plugins.server.vertx.VertxResteasyDeployment;
+
+import javax.inject.Inject;
+
+/**
+ * Runs one HTTP server on the event loop of this verticle. All instances share the same port, Vert.x
+ * distributes the accepted connections between them.
+ */
+public class RestVerticle extends AbstractVerticle {
+
+    @Inject
+    private RestConfiguration configuration;
+
+    @Inject
+    private VertxResteasyDeployment deployment;
+
+    @Inject
+    private InFlightRequests inFlightRequests;
+
+    @Override
+    public void start(Future<Void> startFuture) throws Exception {
+        final HttpServerOptions serverOptions = new HttpServerOptions()
+                .setReusePort(configuration.getReusePort())
+                .setTcpFastOpen(configuration.getTcpFastOpen())
+                .setTcpNoDelay(configuration.getTcpNoDelay());
+
+        vertx.createHttpServer(serverOptions)
+                .requestHandler(new GuiceVertxRequestHandler(vertx, deployment, inFlightRequests))
+                .listen(configuration.getPort(), configuration.getHost(), result -> {
+                    if (result.failed()) {
+                        startFuture.fail(result.cause());
+                    } else {
+                        startFuture.complete(null);
+                    }
+                });
+    }
+}
@@ -15,10 +15,10 @@
  */
 package org.jzenith.rest.health;
 
-import io.reactivex.Observable;
 import io.reactivex.Single;
-import org.jzenith.core.health.HealthCheck;
+import org.jzenith.core.health.HealthCheckGroup;
 import org.jzenith.core.health.HealthCheckResult;
+import org.jzenith.core.health.HealthCheckScheduler;
 import org.jzenith.core.health.HealthState;
 
 import javax.inject.Inject;
@@ -28,25 +28,48 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.List;
-import java.util.Set;
 
 @Path("/health")
 public class HealthCheckResource {
 
-    private final Set<HealthCheck> healthChecks;
+    private final HealthCheckScheduler healthCheckScheduler;
 
     @Inject
-    public HealthCheckResource(Set<HealthCheck> healthChecks) {
-        this.healthChecks = healthChecks;
+    public HealthCheckResource(HealthCheckScheduler healthCheckScheduler) {
+        this.healthCheckScheduler = healthCheckScheduler;
     }
 
+    /**
+     * Answers from the latest results of the {@link HealthCheckScheduler}, the checks are not executed per request.
+     */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Single<Response> doHealthChecks() {
-        return Observable.fromIterable(healthChecks)
-                .flatMapSingle(healthCheck -> healthCheck.execute())
-                .toList()
-                .map(this::toResponse);
+        return Single.just(toResponse(healthCheckScheduler.getResults()));
+    }
+
+    /**
+     * Liveness probe, only evaluates the checks of {@link HealthCheckGroup#LIVENESS} and is {@code UP} without any.
+     */
+    @GET
+    @Path("/live")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Single<Response> doLivenessChecks() {
+        return Single.just(toResponse(healthCheckScheduler.getResults(HealthCheckGroup.LIVENESS)));
+    }
+
+    @GET
+    @Path("/ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Single<Response> doReadinessChecks() {
+        return Single.just(toResponse(healthCheckScheduler.getResults(HealthCheckGroup.READINESS)));
+    }
+
+    @GET
+    @Path("/started")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Single<Response> doStartupChecks() {
+        return Single.just(toResponse(healthCheckScheduler.getResults(HealthCheckGroup.STARTUP)));
     }
 
     private Response toResponse(List<HealthCheckResult> healthCheckResults) {
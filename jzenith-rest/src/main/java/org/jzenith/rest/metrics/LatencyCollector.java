@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest.metrics;
+
+import com.google.common.collect.ImmutableList;
+import io.prometheus.client.Collector;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Exports the latencies recorded by {@link LatencyRecorder}s: quantiles and max over the sliding window
+ * as {@code rest_request_latency_seconds} and {@code rest_request_latency_seconds_max}, cumulative
+ * buckets as {@code rest_request_latency_histogram_seconds}.
+ */
+final class LatencyCollector extends Collector {
+
+    private static final LatencyCollector INSTANCE = new LatencyCollector().register();
+
+    private static final List<String> LABEL_NAMES = ImmutableList.of("resourceName", "methodName");
+    private static final List<String> QUANTILE_LABEL_NAMES = ImmutableList.of("resourceName", "methodName", "quantile");
+    private static final List<String> BUCKET_LABEL_NAMES = ImmutableList.of("resourceName", "methodName", "le");
+
+    // keyed on resource class and resource method, a method inherited by two resources is recorded per resource
+    private final ConcurrentMap<List<Object>, Registration> registrations = new ConcurrentHashMap<>();
+
+    private LatencyCollector() {
+    }
+
+    static LatencyRecorder recorder(Class<?> resourceClass, Method resourceMethod, Duration window, double[] buckets) {
+        return INSTANCE.registrations.computeIfAbsent(ImmutableList.of(resourceClass, resourceMethod),
+                key -> new Registration(resourceClass.getSimpleName(), methodName(resourceClass, resourceMethod), new LatencyRecorder(window, buckets)))
+                .recorder;
+    }
+
+    static String methodName(Class<?> resourceClass, Method resourceMethod) {
+        final long overloads = Arrays.stream(resourceClass.getMethods())
+                .filter(method -> method.getName().equals(resourceMethod.getName()))
+                .count();
+        if (overloads <= 1) {
+            return resourceMethod.getName();
+        }
+
+        return Arrays.stream(resourceMethod.getParameterTypes())
+                .map(Class::getSimpleName)
+                .collect(Collectors.joining(",", resourceMethod.getName() + "(", ")"));
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        final long now = System.nanoTime();
+        final List<MetricFamilySamples.Sample> quantiles = new ArrayList<>();
+        final List<MetricFamilySamples.Sample> max = new ArrayList<>();
+        final List<MetricFamilySamples.Sample> histogram = new ArrayList<>();
+
+        for (final Registration registration : registrations.values()) {
+            final String resourceName = registration.resourceName;
+            final String methodName = registration.methodName;
+            final LatencyRecorder.Snapshot snapshot = registration.recorder.snapshot(now);
+
+            quantiles.add(quantile(resourceName, methodName, "0.5", snapshot.p50));
+            quantiles.add(quantile(resourceName, methodName, "0.9", snapshot.p90));
+            quantiles.add(quantile(resourceName, methodName, "0.99", snapshot.p99));
+            quantiles.add(quantile(resourceName, methodName, "0.999", snapshot.p999));
+            quantiles.add(new MetricFamilySamples.Sample("rest_request_latency_seconds_count", LABEL_NAMES, ImmutableList.of(resourceName, methodName), snapshot.count));
+            quantiles.add(new MetricFamilySamples.Sample("rest_request_latency_seconds_sum", LABEL_NAMES, ImmutableList.of(resourceName, methodName), snapshot.sum));
+
+            max.add(new MetricFamilySamples.Sample("rest_request_latency_seconds_max", LABEL_NAMES, ImmutableList.of(resourceName, methodName), snapshot.max));
+
+            for (int i = 0; i < snapshot.buckets.length; i++) {
+                histogram.add(new MetricFamilySamples.Sample("rest_request_latency_histogram_seconds_bucket", BUCKET_LABEL_NAMES,
+                        ImmutableList.of(resourceName, methodName, doubleToGoString(snapshot.buckets[i])), snapshot.bucketCounts[i]));
+            }
+            histogram.add(new MetricFamilySamples.Sample("rest_request_latency_histogram_seconds_bucket", BUCKET_LABEL_NAMES,
+                    ImmutableList.of(resourceName, methodName, "+Inf"), snapshot.count));
+            histogram.add(new MetricFamilySamples.Sample("rest_request_latency_histogram_seconds_count", LABEL_NAMES, ImmutableList.of(resourceName, methodName), snapshot.count));
+            histogram.add(new MetricFamilySamples.Sample("rest_request_latency_histogram_seconds_sum", LABEL_NAMES, ImmutableList.of(resourceName, methodName), snapshot.sum));
+        }
+
+        return ImmutableList.of(
+                new MetricFamilySamples("rest_request_latency_seconds", Type.SUMMARY, "Request latency in seconds over the sliding window.", quantiles),
+                new MetricFamilySamples("rest_request_latency_seconds_max", Type.GAUGE, "Maximum request latency in seconds over the sliding window.", max),
+                new MetricFamilySamples("rest_request_latency_histogram_seconds", Type.HISTOGRAM, "Request latency in seconds.", histogram));
+    }
+
+    private static MetricFamilySamples.Sample quantile(String resourceName, String methodName, String quantile, double value) {
+        return new MetricFamilySamples.Sample("rest_request_latency_seconds", QUANTILE_LABEL_NAMES, ImmutableList.of(resourceName, methodName, quantile), value);
+    }
+
+    private static final class Registration {
+        private final String resourceName;
+        private final String methodName;
+        private final LatencyRecorder recorder;
+
+        private Registration(String resourceName, String methodName, LatencyRecorder recorder) {
+            this.resourceName = resourceName;
+            this.methodName = methodName;
+            this.recorder = recorder;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Records the latencies of one resource method into an HdrHistogram.
+ * <p>
+ * Recording is wait-free. Every scrape takes the values recorded since the last scrape and keeps them
+ * for the sliding window, quantiles are computed over that window. Bucket counts, count and sum are
+ * cumulative, as Prometheus expects.
+ */
+final class LatencyRecorder {
+
+    private static final long LOWEST_DISCERNIBLE_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final double NANOS_PER_SECOND = 1_000_000_000D;
+
+    private final long windowNanos;
+    private final double[] buckets;
+
+    private final Recorder recorder = new Recorder(LOWEST_DISCERNIBLE_NANOS, HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final DoubleAdder sumSeconds = new DoubleAdder();
+
+    // guarded by this
+    private final Histogram cumulative = newHistogram();
+    private final Deque<Slice> slices = new ArrayDeque<>();
+
+    LatencyRecorder(Duration window, double[] buckets) {
+        this.windowNanos = window.toNanos();
+        this.buckets = buckets.clone();
+    }
+
+    void record(long durationNanos) {
+        recorder.recordValue(Math.max(LOWEST_DISCERNIBLE_NANOS, Math.min(durationNanos, HIGHEST_TRACKABLE_NANOS)));
+        sumSeconds.add(durationNanos / NANOS_PER_SECOND);
+    }
+
+    synchronized Snapshot snapshot(long nowNanos) {
+        final Histogram interval = recorder.getIntervalHistogram();
+        cumulative.add(interval);
+        slices.addLast(new Slice(nowNanos, interval));
+        while (nowNanos - slices.peekFirst().endNanos > windowNanos) {
+            slices.removeFirst();
+        }
+
+        final Histogram windowed = newHistogram();
+        slices.forEach(slice -> windowed.add(slice.histogram));
+
+        final double[] bucketCounts = new double[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            bucketCounts[i] = cumulative.getCountBetweenValues(0, (long) (buckets[i] * NANOS_PER_SECOND));
+        }
+
+        return new Snapshot(
+                toSeconds(windowed.getValueAtPercentile(50.0)),
+                toSeconds(windowed.getValueAtPercentile(90.0)),
+                toSeconds(windowed.getValueAtPercentile(99.0)),
+                toSeconds(windowed.getValueAtPercentile(99.9)),
+                toSeconds(windowed.getMaxValue()),
+                buckets.clone(),
+                bucketCounts,
+                cumulative.getTotalCount(),
+                sumSeconds.sum());
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(LOWEST_DISCERNIBLE_NANOS, HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / NANOS_PER_SECOND;
+    }
+
+    private static final class Slice {
+        private final long endNanos;
+        private final Histogram histogram;
+
+        private Slice(long endNanos, Histogram histogram) {
+            this.endNanos = endNanos;
+            this.histogram = histogram;
+        }
+    }
+
+    static final class Snapshot {
+        final double p50;
+        final double p90;
+        final double p99;
+        final double p999;
+        final double max;
+        final double[] buckets;
+        final double[] bucketCounts;
+        final long count;
+        final double sum;
+
+        private Snapshot(double p50, double p90, double p99, double p999, double max, double[] buckets, double[] bucketCounts, long count, double sum) {
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+            this.buckets = buckets;
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sum = sum;
+        }
+    }
+}
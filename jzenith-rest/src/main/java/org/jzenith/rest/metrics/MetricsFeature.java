@@ -15,17 +15,61 @@
  */
 package org.jzenith.rest.metrics;
 
-import io.prometheus.client.Counter;
-import io.prometheus.client.Histogram;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Doubles;
+import lombok.NonNull;
+import org.jzenith.rest.RestConfiguration;
 
 import javax.ws.rs.container.DynamicFeature;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.FeatureContext;
+import java.util.Map;
 
 public class MetricsFeature implements DynamicFeature {
 
+    private final RestConfiguration configuration;
+    private final Map<Class<?>, double[]> latencyBuckets;
+    private final MetricsInterceptor.RequestMetrics requestMetrics;
+
+    public MetricsFeature() {
+        this(MetricsInterceptor.REST_METRICS);
+    }
+
+    private MetricsFeature(MetricsInterceptor.RequestMetrics requestMetrics) {
+        this.configuration = null;
+        this.latencyBuckets = ImmutableMap.of();
+        this.requestMetrics = requestMetrics;
+    }
+
+    /**
+     * @param latencyBuckets bucket layouts for the latency histogram of single resources, all other resources use
+     *                       the layout of {@link RestConfiguration#getLatencyBuckets()}
+     */
+    public MetricsFeature(@NonNull RestConfiguration configuration, @NonNull Map<Class<?>, double[]> latencyBuckets) {
+        this.configuration = configuration;
+        this.latencyBuckets = ImmutableMap.copyOf(latencyBuckets);
+        this.requestMetrics = MetricsInterceptor.REST_METRICS;
+    }
+
+    /**
+     * @return a feature recording the requests of the admin server as {@code admin_request_total} and
+     * {@code admin_request_duration_seconds}
+     */
+    public static MetricsFeature forAdminServer() {
+        return new MetricsFeature(MetricsInterceptor.ADMIN_METRICS);
+    }
+
     @Override
     public void configure(ResourceInfo resourceInfo, FeatureContext context) {
-        context.register(new MetricsInterceptor(resourceInfo));
+        if (configuration == null || !configuration.getLatencyHistogram()) {
+            context.register(new MetricsInterceptor(resourceInfo, requestMetrics, null));
+            return;
+        }
+
+        final double[] buckets = latencyBuckets.getOrDefault(resourceInfo.getResourceClass(), Doubles.toArray(configuration.getLatencyBuckets()));
+        final LatencyRecorder latencyRecorder = LatencyCollector.recorder(resourceInfo.getResourceClass(),
+                resourceInfo.getResourceMethod(), configuration.getLatencyWindow(), buckets);
+
+        context.register(new MetricsInterceptor(resourceInfo, requestMetrics, latencyRecorder));
     }
 }
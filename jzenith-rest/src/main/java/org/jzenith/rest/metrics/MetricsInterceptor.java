@@ -18,50 +18,138 @@ package org.jzenith.rest.metrics;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Histogram;
 
+import javax.annotation.Nullable;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.container.*;
-import javax.ws.rs.core.Request;
 import java.io.IOException;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Records count and duration of the requests to one resource method.
+ * <p>
+ * The metric children are resolved once per status code and then cached, so recording a request neither
+ * allocates label arrays nor looks up the children. The children themselves are striped adders, so
+ * concurrent requests do not contend. Recording is not allocation-free though: the start time is carried as
+ * a boxed request property, the only place the request context offers for it.
+ */
 public class MetricsInterceptor implements ContainerRequestFilter, ContainerResponseFilter {
 
-    private static final Counter REQUEST_COUNTER = Counter.build()
-            .name("rest_request_total")
-            .help("Total requests to the service")
-            .labelNames("resourceName", "methodName", "method", "status")
-            .register();
-
-    private static final Histogram REQUEST_DURATION = Histogram.build()
-            .name("rest_request_duration_seconds")
-            .labelNames("resourceName", "methodName", "method", "status")
-            .help("Request duration in seconds.")
-            .buckets(0.005D, 0.01D, 0.05D, 0.1D, 0.25D, 0.5D, 0.75D, 1.0D, 2.0D, 3.0D, 4.0, 5.0D, 9.99D)
-            .register();
+    static final RequestMetrics REST_METRICS = new RequestMetrics("rest");
+    static final RequestMetrics ADMIN_METRICS = new RequestMetrics("admin");
+
     private static final String START_TIME_PROPERTY = "jzenith.startTime";
 
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+    private static final double NANOS_PER_SECOND = 1_000_000_000D;
+
     private final String resourceName;
     private final String methodName;
+    private final String httpMethod;
+    private final AtomicReferenceArray<Children> childrenByStatus = new AtomicReferenceArray<>(MAX_STATUS - MIN_STATUS + 1);
+    private final RequestMetrics requestMetrics;
+    private final LatencyRecorder latencyRecorder;
 
     public MetricsInterceptor(final ResourceInfo resourceInfo) {
-        resourceName = resourceInfo.getResourceClass().getSimpleName();
+        this(resourceInfo, REST_METRICS, null);
+    }
+
+    MetricsInterceptor(final ResourceInfo resourceInfo, final RequestMetrics requestMetrics, @Nullable final LatencyRecorder latencyRecorder) {
+        this.requestMetrics = requestMetrics;
+        resourceName = resourceName(resourceInfo);
         methodName = resourceInfo.getResourceMethod().getName();
+        httpMethod = httpMethod(resourceInfo.getResourceMethod());
+        this.latencyRecorder = latencyRecorder;
     }
 
+    static String resourceName(final ResourceInfo resourceInfo) {
+        return resourceInfo.getResourceClass().getSimpleName();
+    }
+
+    private static String httpMethod(Method resourceMethod) {
+        for (final Annotation annotation : resourceMethod.getAnnotations()) {
+            final HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (httpMethod != null) {
+                return httpMethod.value();
+            }
+        }
+        return null;
+    }
 
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
-        requestContext.setProperty(START_TIME_PROPERTY, System.currentTimeMillis());
+        requestContext.setProperty(START_TIME_PROPERTY, System.nanoTime());
     }
 
     @Override
     public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
-        final Request request = requestContext.getRequest();
-        final String statusString = String.valueOf(responseContext.getStatus());
-        REQUEST_COUNTER.labels(resourceName, methodName, request.getMethod(), statusString).inc();
-
         final Long startTime = (Long) requestContext.getProperty(START_TIME_PROPERTY);
-        REQUEST_DURATION.labels(resourceName, methodName, request.getMethod(), statusString).observe((System.currentTimeMillis() - startTime) / 1000D);
+        final Children children = children(requestContext.getMethod(), responseContext.getStatus());
+
+        children.counter.inc();
+        if (startTime != null) {
+            final long durationNanos = System.nanoTime() - startTime;
+            children.duration.observe(durationNanos / NANOS_PER_SECOND);
+            if (latencyRecorder != null) {
+                latencyRecorder.record(durationNanos);
+            }
+        }
+    }
+
+    private Children children(String requestMethod, int status) {
+        // Requests with another method than the declared one (e.g. HEAD for a GET) are rare and not cached
+        if (status < MIN_STATUS || status > MAX_STATUS || !requestMethod.equals(httpMethod)) {
+            return resolveChildren(requestMethod, status);
+        }
+
+        final int index = status - MIN_STATUS;
+        Children children = childrenByStatus.get(index);
+        if (children == null) {
+            // Resolving twice is harmless, both resolve to the same children
+            children = resolveChildren(requestMethod, status);
+            childrenByStatus.set(index, children);
+        }
+        return children;
+    }
+
+    private Children resolveChildren(String requestMethod, int status) {
+        final String statusString = String.valueOf(status);
+
+        return new Children(requestMetrics.counter.labels(resourceName, methodName, requestMethod, statusString),
+                requestMetrics.duration.labels(resourceName, methodName, requestMethod, statusString));
+    }
+
+    /**
+     * Request count and duration of one server, the admin server records its requests apart from the application.
+     */
+    static final class RequestMetrics {
+        private final Counter counter;
+        private final Histogram duration;
+
+        private RequestMetrics(String prefix) {
+            counter = Counter.build()
+                    .name(prefix + "_request_total")
+                    .help("Total requests to the service")
+                    .labelNames("resourceName", "methodName", "method", "status")
+                    .register();
+            duration = Histogram.build()
+                    .name(prefix + "_request_duration_seconds")
+                    .labelNames("resourceName", "methodName", "method", "status")
+                    .help("Request duration in seconds.")
+                    .buckets(0.005D, 0.01D, 0.05D, 0.1D, 0.25D, 0.5D, 0.75D, 1.0D, 2.0D, 3.0D, 4.0, 5.0D, 9.99D)
+                    .register();
+        }
+    }
 
+    private static final class Children {
+        private final Counter.Child counter;
+        private final Histogram.Child duration;
 
+        private Children(Counter.Child counter, Histogram.Child duration) {
+            this.counter = counter;
+            this.duration = duration;
+        }
     }
 }
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest.metrics;
+
+import io.prometheus.client.Collector;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Enumeration;
+
+/**
+ * Writes metric families in the OpenMetrics text format, the client library only supports the
+ * Prometheus text format 0.0.4.
+ */
+final class OpenMetricsTextFormat {
+
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=0.0.1; charset=utf-8";
+
+    private static final String TOTAL_SUFFIX = "_total";
+    private static final String CREATED_SUFFIX = "_created";
+
+    private OpenMetricsTextFormat() {
+    }
+
+    static void write(Writer writer, Enumeration<Collector.MetricFamilySamples> familySamples) throws IOException {
+        while (familySamples.hasMoreElements()) {
+            final Collector.MetricFamilySamples metricFamilySamples = familySamples.nextElement();
+            final boolean counter = metricFamilySamples.type == Collector.Type.COUNTER && isValidCounter(metricFamilySamples);
+            final String name = counter && metricFamilySamples.name.endsWith(TOTAL_SUFFIX)
+                    ? metricFamilySamples.name.substring(0, metricFamilySamples.name.length() - TOTAL_SUFFIX.length())
+                    : metricFamilySamples.name;
+
+            writer.write("# TYPE ");
+            writer.write(name);
+            writer.write(' ');
+            writer.write(counter ? "counter" : typeString(metricFamilySamples.type));
+            writer.write('\n');
+
+            writer.write("# HELP ");
+            writer.write(name);
+            writer.write(' ');
+            writeEscaped(writer, metricFamilySamples.help);
+            writer.write('\n');
+
+            for (final Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                writer.write(sample.name);
+                if (!sample.labelNames.isEmpty()) {
+                    writer.write('{');
+                    for (int i = 0; i < sample.labelNames.size(); i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writer.write(sample.labelNames.get(i));
+                        writer.write("=\"");
+                        writeEscaped(writer, sample.labelValues.get(i));
+                        writer.write('"');
+                    }
+                    writer.write('}');
+                }
+                writer.write(' ');
+                writer.write(Collector.doubleToGoString(sample.value));
+                if (sample.timestampMs != null) {
+                    writer.write(' ');
+                    writer.write(Double.toString(sample.timestampMs / 1000D));
+                }
+                writer.write('\n');
+            }
+        }
+        writer.write("# EOF\n");
+    }
+
+    /**
+     * OpenMetrics requires all samples of a counter to end with {@code _total} or {@code _created},
+     * older collectors do not always follow that and are exported as {@code unknown}.
+     */
+    private static boolean isValidCounter(Collector.MetricFamilySamples metricFamilySamples) {
+        return metricFamilySamples.samples.stream()
+                .allMatch(sample -> sample.name.endsWith(TOTAL_SUFFIX) || sample.name.endsWith(CREATED_SUFFIX));
+    }
+
+    private static String typeString(Collector.Type type) {
+        switch (type) {
+            case GAUGE:
+                return "gauge";
+            case SUMMARY:
+                return "summary";
+            case HISTOGRAM:
+                return "histogram";
+            default:
+                return "unknown";
+        }
+    }
+
+    private static void writeEscaped(Writer writer, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
+    }
+}
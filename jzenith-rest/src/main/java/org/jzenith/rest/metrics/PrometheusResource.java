@@ -15,68 +15,95 @@
  */
 package org.jzenith.rest.metrics;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
-import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.exporter.common.TextFormat;
-import io.vertx.core.Vertx;
-import io.vertx.core.http.HttpServerRequest;
-import org.apache.commons.io.output.StringBuilderWriter;
+import io.reactivex.Single;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
-import javax.ws.rs.container.AsyncResponse;
-import javax.ws.rs.container.Suspended;
-import javax.ws.rs.core.Context;
-import java.io.IOException;
-import java.io.Writer;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.List;
 import java.util.Set;
 
 @Path("/metrics")
 public class PrometheusResource {
 
-    private final CollectorRegistry registry;
+    private static final String OPEN_METRICS_MEDIA_TYPE = "application/openmetrics-text";
+    private static final String GZIP = "gzip";
+    private static final String ANY_ENCODING = "*";
+    private static final Splitter LIST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final Splitter PARAMETER_SPLITTER = Splitter.on(';').trimResults();
 
-    private final HttpServerRequest httpServerRequest;
-    private final Vertx vertx;
+    private final ScrapeCache scrapeCache;
 
     @Inject
-    public PrometheusResource(final HttpServerRequest httpServerRequest,
-                              final Vertx vertx) {
-        this.registry = CollectorRegistry.defaultRegistry;
-
-        this.httpServerRequest = httpServerRequest;
-        this.vertx = vertx;
+    public PrometheusResource(final ScrapeCache scrapeCache) {
+        this.scrapeCache = scrapeCache;
     }
 
     @GET
     @Path("/prometheus")
-    @Produces(TextFormat.CONTENT_TYPE_004)
-    public void prometheusEndpoint(@Suspended final AsyncResponse asyncResponse) {
-        final Set<String> includedNames = ImmutableSet.copyOf(httpServerRequest.params().getAll("name"));
-        vertx.executeBlocking(future -> {
-                    try {
-                        try (Writer writer = new StringBuilderWriter()) {
-                            TextFormat.write004(writer, registry.filteredMetricFamilySamples(includedNames));
-                            writer.flush();
-                            future.complete(writer.toString());
-                        }
-                    } catch (IOException e) {
-                        future.fail(e);
-                    }
+    @Produces({TextFormat.CONTENT_TYPE_004, OpenMetricsTextFormat.CONTENT_TYPE})
+    public Single<Response> prometheusEndpoint(@QueryParam("name") final List<String> names,
+                                               @Nullable @HeaderParam(HttpHeaders.ACCEPT) final String accept,
+                                               @Nullable @HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding) {
+        final Set<String> includedNames = ImmutableSet.copyOf(names);
+        final boolean openMetrics = accept != null && accept.contains(OPEN_METRICS_MEDIA_TYPE);
+        final boolean gzip = acceptsGzip(acceptEncoding);
 
-                },
-                result -> {
-                    if (result.failed()) {
-                        asyncResponse.resume(result.cause());
-                    } else {
-                        asyncResponse.resume(result.result());
+        return scrapeCache.scrape(includedNames, openMetrics, gzip)
+                .map(buffer -> {
+                    final Response.ResponseBuilder builder = Response.ok(buffer)
+                            .type(openMetrics ? OpenMetricsTextFormat.CONTENT_TYPE : TextFormat.CONTENT_TYPE_004)
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+                    if (gzip) {
+                        builder.encoding(GZIP);
                     }
-                    return;
-                }
-        );
+                    return builder.build();
+                });
+    }
 
+    /**
+     * Whether gzip is an acceptable content coding. An explicit gzip entry wins over the wildcard and a
+     * quality value of zero marks the coding as not acceptable (RFC 7231, section 5.3.4).
+     */
+    static boolean acceptsGzip(@Nullable final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
 
+        double gzipQuality = -1.0D;
+        double anyQuality = -1.0D;
+        for (String coding : LIST_SPLITTER.split(acceptEncoding)) {
+            final List<String> parts = PARAMETER_SPLITTER.splitToList(coding);
+            final String name = parts.get(0);
+            if (GZIP.equalsIgnoreCase(name)) {
+                gzipQuality = quality(parts);
+            } else if (ANY_ENCODING.equals(name)) {
+                anyQuality = quality(parts);
+            }
+        }
+
+        return (gzipQuality >= 0.0D ? gzipQuality : anyQuality) > 0.0D;
+    }
+
+    private static double quality(final List<String> parts) {
+        for (String parameter : parts.subList(1, parts.size())) {
+            if (parameter.length() > 1 && Character.toLowerCase(parameter.charAt(0)) == 'q' && parameter.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0.0D;
+                }
+            }
+        }
+        return 1.0D;
     }
 }
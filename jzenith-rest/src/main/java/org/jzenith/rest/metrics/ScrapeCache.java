@@ -0,0 +1,205 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest.metrics;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import io.reactivex.Single;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.jzenith.rest.RestConfiguration;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Renders scrapes of the default registry into {@link Buffer}s and keeps them for a short time.
+ * <p>
+ * Concurrent scrapers asking for the same output share a single rendering and its buffer, so several
+ * scrapers do not multiply the work and garbage of serializing the registry. A rendering is cancelled when
+ * all of its scrapers are gone before it started.
+ */
+@Slf4j
+public class ScrapeCache {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Vertx vertx;
+    private final CollectorRegistry registry;
+    private final Cache<Key, Scrape> scrapes;
+
+    @Inject
+    public ScrapeCache(Vertx vertx, RestConfiguration configuration) {
+        this(vertx, CollectorRegistry.defaultRegistry, configuration.getMetricsCacheTtl());
+    }
+
+    ScrapeCache(Vertx vertx, CollectorRegistry registry, Duration ttl) {
+        this.vertx = vertx;
+        this.registry = registry;
+        this.scrapes = CacheBuilder.newBuilder()
+                .maximumSize(16)
+                .expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    Single<Buffer> scrape(Set<String> includedNames, boolean openMetrics, boolean gzip) {
+        final Key key = new Key(ImmutableSet.copyOf(includedNames), openMetrics, gzip);
+        return Single.create(emitter -> {
+            final Scrape scrape = retain(key);
+            emitter.setCancellable(() -> {
+                if (scrape.release()) {
+                    // Nobody waits for this render any more, a render that has not started yet is skipped
+                    scrapes.asMap().remove(key, scrape);
+                    scrape.result.cancel(false);
+                }
+            });
+            scrape.result.whenComplete((buffer, error) -> {
+                if (error != null) {
+                    emitter.onError(error);
+                } else {
+                    emitter.onSuccess(buffer);
+                }
+            });
+        });
+    }
+
+    private Scrape retain(Key key) throws ExecutionException {
+        while (true) {
+            final Scrape scrape = scrapes.get(key, () -> render(key));
+            if (scrape.retain()) {
+                return scrape;
+            }
+            // The render was cancelled by its last scraper just now
+            scrapes.asMap().remove(key, scrape);
+        }
+    }
+
+    private Scrape render(Key key) {
+        final Scrape scrape = new Scrape();
+        // Scrapes of the admin server render on its own worker pool
+        final Context context = Vertx.currentContext() != null ? Vertx.currentContext() : vertx.getOrCreateContext();
+        context.<Buffer>executeBlocking(future -> {
+            if (scrape.result.isCancelled()) {
+                future.complete();
+                return;
+            }
+            try {
+                future.complete(write(key));
+            } catch (IOException | RuntimeException e) {
+                future.fail(e);
+            }
+        }, false, asyncResult -> {
+            if (asyncResult.failed()) {
+                // Failed scrapes are not cached, the next scraper tries again
+                scrapes.asMap().remove(key, scrape);
+                scrape.result.completeExceptionally(asyncResult.cause());
+            } else {
+                scrape.result.complete(asyncResult.result());
+            }
+        });
+        return scrape;
+    }
+
+    private Buffer write(Key key) throws IOException {
+        final Buffer buffer = Buffer.buffer(INITIAL_BUFFER_SIZE);
+        final OutputStream bufferStream = new BufferOutputStream(buffer);
+        try (OutputStream outputStream = key.gzip ? new GZIPOutputStream(bufferStream) : bufferStream;
+             Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+            if (key.openMetrics) {
+                OpenMetricsTextFormat.write(writer, registry.filteredMetricFamilySamples(key.includedNames));
+            } else {
+                TextFormat.write004(writer, registry.filteredMetricFamilySamples(key.includedNames));
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * One rendering and the scrapers waiting for it. Once all of them are gone before it is done, it is
+     * cancelled and can not be retained any more.
+     */
+    private static final class Scrape {
+        private final CompletableFuture<Buffer> result = new CompletableFuture<>();
+
+        // guarded by this
+        private int subscribers;
+        private boolean cancelled;
+
+        private synchronized boolean retain() {
+            if (cancelled) {
+                return false;
+            }
+            subscribers++;
+            return true;
+        }
+
+        private synchronized boolean release() {
+            subscribers--;
+            if (subscribers == 0 && !result.isDone()) {
+                cancelled = true;
+            }
+            return cancelled;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+        private final Set<String> includedNames;
+        private final boolean openMetrics;
+        private final boolean gzip;
+
+        private Key(Set<String> includedNames, boolean openMetrics, boolean gzip) {
+            this.includedNames = includedNames;
+            this.openMetrics = openMetrics;
+            this.gzip = gzip;
+        }
+    }
+
+    private static final class BufferOutputStream extends OutputStream {
+
+        private final Buffer buffer;
+
+        private BufferOutputStream(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.appendBytes(b, off, len);
+        }
+    }
+}
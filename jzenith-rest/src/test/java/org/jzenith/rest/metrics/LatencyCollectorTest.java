@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest.metrics;
+
+import io.prometheus.client.CollectorRegistry;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class LatencyCollectorTest {
+
+    private static final double[] BUCKETS = {0.05D, 0.2D, 1.0D};
+
+    // HdrHistogram keeps two significant digits
+    private static final double PRECISION = 0.001D;
+
+    public static class TestResource {
+        public String getUser(String id) {
+            return id;
+        }
+
+        public String getUser(String id, int version) {
+            return id + version;
+        }
+
+        public String listUsers() {
+            return "";
+        }
+    }
+
+    @Test
+    public void testExportsRecordedValue() throws Exception {
+        final Method listUsers = TestResource.class.getMethod("listUsers");
+        final LatencyRecorder recorder = LatencyCollector.recorder(TestResource.class, listUsers, Duration.ofMinutes(1), BUCKETS);
+
+        recorder.record(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertEquals(0.1D, quantile("listUsers", "0.5"), PRECISION);
+        assertEquals(0.1D, quantile("listUsers", "0.9"), PRECISION);
+        assertEquals(0.1D, quantile("listUsers", "0.99"), PRECISION);
+        assertEquals(0.1D, quantile("listUsers", "0.999"), PRECISION);
+        assertEquals(0.1D, sample("rest_request_latency_seconds_max", "listUsers"), PRECISION);
+        assertEquals(1D, sample("rest_request_latency_seconds_count", "listUsers"), 0D);
+        assertEquals(0.1D, sample("rest_request_latency_seconds_sum", "listUsers"), PRECISION);
+
+        assertEquals(0D, bucket("listUsers", "0.05"), 0D);
+        assertEquals(1D, bucket("listUsers", "0.2"), 0D);
+        assertEquals(1D, bucket("listUsers", "1.0"), 0D);
+        assertEquals(1D, bucket("listUsers", "+Inf"), 0D);
+        assertEquals(1D, sample("rest_request_latency_histogram_seconds_count", "listUsers"), 0D);
+    }
+
+    @Test
+    public void testOverloadsAreRecordedApart() throws Exception {
+        final Method getUser = TestResource.class.getMethod("getUser", String.class);
+        final Method getUserVersion = TestResource.class.getMethod("getUser", String.class, int.class);
+
+        final LatencyRecorder recorder = LatencyCollector.recorder(TestResource.class, getUser, Duration.ofMinutes(1), BUCKETS);
+        final LatencyRecorder versionRecorder = LatencyCollector.recorder(TestResource.class, getUserVersion, Duration.ofMinutes(1), BUCKETS);
+        assertNotSame(recorder, versionRecorder);
+
+        recorder.record(TimeUnit.MILLISECONDS.toNanos(10));
+        versionRecorder.record(TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertEquals(0.01D, sample("rest_request_latency_seconds_max", "getUser(String)"), PRECISION);
+        assertEquals(0.5D, sample("rest_request_latency_seconds_max", "getUser(String,int)"), 0.005D);
+        assertEquals(1D, bucket("getUser(String)", "0.05"), 0D);
+        assertEquals(0D, bucket("getUser(String,int)", "0.2"), 0D);
+        assertEquals(1D, bucket("getUser(String,int)", "1.0"), 0D);
+    }
+
+    @Test
+    public void testMethodName() throws Exception {
+        assertEquals("listUsers", LatencyCollector.methodName(TestResource.class, TestResource.class.getMethod("listUsers")));
+        assertEquals("getUser(String,int)",
+                LatencyCollector.methodName(TestResource.class, TestResource.class.getMethod("getUser", String.class, int.class)));
+    }
+
+    private static double quantile(String methodName, String quantile) {
+        return CollectorRegistry.defaultRegistry.getSampleValue("rest_request_latency_seconds",
+                new String[]{"resourceName", "methodName", "quantile"}, new String[]{"TestResource", methodName, quantile});
+    }
+
+    private static double bucket(String methodName, String le) {
+        return CollectorRegistry.defaultRegistry.getSampleValue("rest_request_latency_histogram_seconds_bucket",
+                new String[]{"resourceName", "methodName", "le"}, new String[]{"TestResource", methodName, le});
+    }
+
+    private static double sample(String name, String methodName) {
+        return CollectorRegistry.defaultRegistry.getSampleValue(name,
+                new String[]{"resourceName", "methodName"}, new String[]{"TestResource", methodName});
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest.metrics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.exporter.common.TextFormat;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrometheusResourceTest {
+
+    private Vertx vertx;
+    private PrometheusResource resource;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        final CollectorRegistry registry = new CollectorRegistry();
+        Counter.build().name("test_requests_total").help("Test requests.").register(registry).inc();
+        resource = new PrometheusResource(new ScrapeCache(vertx, registry, Duration.ZERO));
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testTextFormat() {
+        final Response response = resource.prometheusEndpoint(ImmutableList.of(), "text/plain", null).blockingGet();
+
+        assertEquals(TextFormat.CONTENT_TYPE_004, response.getHeaderString(HttpHeaders.CONTENT_TYPE));
+        assertEquals(HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING, response.getHeaderString(HttpHeaders.VARY));
+        assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(body(response).contains("# TYPE test_requests_total counter\ntest_requests_total 1.0\n"));
+    }
+
+    @Test
+    public void testOpenMetrics() {
+        final Response response = resource.prometheusEndpoint(ImmutableList.of(),
+                "application/openmetrics-text; version=0.0.1,text/plain;q=0.5", null).blockingGet();
+
+        assertEquals(OpenMetricsTextFormat.CONTENT_TYPE, response.getHeaderString(HttpHeaders.CONTENT_TYPE));
+        final String body = body(response);
+        assertTrue(body.contains("# TYPE test_requests counter\n"));
+        assertTrue(body.endsWith("# EOF\n"));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        final Response response = resource.prometheusEndpoint(ImmutableList.of(), null, "gzip, deflate").blockingGet();
+
+        assertEquals(TextFormat.CONTENT_TYPE_004, response.getHeaderString(HttpHeaders.CONTENT_TYPE));
+        assertEquals("gzip", response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        final byte[] compressed = ((Buffer) response.getEntity()).getBytes();
+        final String body = new String(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))), StandardCharsets.UTF_8);
+        assertTrue(body.contains("test_requests_total 1.0\n"));
+    }
+
+    @Test
+    public void testGzipRefusedWithZeroQuality() {
+        final Response response = resource.prometheusEndpoint(ImmutableList.of(), null, "gzip;q=0, deflate").blockingGet();
+
+        assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(body(response).contains("test_requests_total 1.0\n"));
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(PrometheusResource.acceptsGzip("gzip"));
+        assertTrue(PrometheusResource.acceptsGzip("deflate, GZIP"));
+        assertTrue(PrometheusResource.acceptsGzip("gzip;q=0.5"));
+        assertTrue(PrometheusResource.acceptsGzip("identity, *"));
+        assertTrue(PrometheusResource.acceptsGzip("*;q=0, gzip; Q=1.0"));
+
+        assertFalse(PrometheusResource.acceptsGzip(null));
+        assertFalse(PrometheusResource.acceptsGzip(""));
+        assertFalse(PrometheusResource.acceptsGzip("deflate, br"));
+        assertFalse(PrometheusResource.acceptsGzip("x-gzip"));
+        assertFalse(PrometheusResource.acceptsGzip("gzip;q=0"));
+        assertFalse(PrometheusResource.acceptsGzip("gzip;q=0.000"));
+        assertFalse(PrometheusResource.acceptsGzip("gzip;q=invalid"));
+        assertFalse(PrometheusResource.acceptsGzip("*;q=0"));
+        assertFalse(PrometheusResource.acceptsGzip("*, gzip;q=0"));
+    }
+
+    @Test
+    public void testNameFilter() {
+        final Response response = resource.prometheusEndpoint(ImmutableList.of("other_total"), null, null).blockingGet();
+
+        assertEquals("", body(response));
+    }
+
+    private static String body(Response response) {
+        return ((Buffer) response.getEntity()).toString(StandardCharsets.UTF_8);
+    }
+}
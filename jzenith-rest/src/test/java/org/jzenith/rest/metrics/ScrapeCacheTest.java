@@ -0,0 +1,159 @@
+/**
+ * Copyright © 2018 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jzenith.rest.metrics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScrapeCacheTest {
+
+    private static final String METRIC_NAME = "scrape_cache_test";
+
+    private Vertx vertx;
+    private TestCollector collector;
+    private ScrapeCache scrapeCache;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        final CollectorRegistry registry = new CollectorRegistry();
+        collector = new TestCollector().register(registry);
+        scrapeCache = new ScrapeCache(vertx, registry, Duration.ofMinutes(1));
+    }
+
+    @After
+    public void tearDown() {
+        collector.release.countDown();
+        vertx.close();
+    }
+
+    @Test
+    public void testConcurrentScrapesShareOneRender() throws Exception {
+        final TestObserver<Buffer> first = scrape().test();
+        final TestObserver<Buffer> second = scrape().test();
+        awaitCollects(1);
+
+        collector.release.countDown();
+
+        final Buffer buffer = first.awaitDone(5, TimeUnit.SECONDS).assertValueCount(1).values().get(0);
+        second.awaitDone(5, TimeUnit.SECONDS).assertValueCount(1);
+        assertSame(buffer, second.values().get(0));
+        assertSame(buffer, scrape().blockingGet());
+        assertTrue(buffer.toString().contains(METRIC_NAME + " 1.0"));
+        assertEquals(1, collector.collects.get());
+    }
+
+    @Test
+    public void testFailedRenderIsNotCached() throws Exception {
+        collector.release.countDown();
+        collector.failure = new IllegalStateException("Collector failed");
+
+        scrape().test().awaitDone(5, TimeUnit.SECONDS).assertError(IllegalStateException.class);
+
+        collector.failure = null;
+        scrape().test().awaitDone(5, TimeUnit.SECONDS).assertValueCount(1);
+        assertEquals(2, collector.collects.get());
+    }
+
+    @Test
+    public void testRenderIsKeptWhileOneScraperWaits() throws Exception {
+        final TestObserver<Buffer> first = scrape().test();
+        final TestObserver<Buffer> second = scrape().test();
+        awaitCollects(1);
+
+        first.dispose();
+        collector.release.countDown();
+
+        second.awaitDone(5, TimeUnit.SECONDS).assertValueCount(1);
+        first.assertNoValues();
+        assertEquals(1, collector.collects.get());
+    }
+
+    @Test
+    public void testAbandonedRenderIsNotShared() throws Exception {
+        final TestObserver<Buffer> first = scrape().test();
+        awaitCollects(1);
+
+        first.dispose();
+        final TestObserver<Buffer> second = scrape().test();
+        awaitCollects(2);
+        collector.release.countDown();
+
+        second.awaitDone(5, TimeUnit.SECONDS).assertValueCount(1);
+        first.assertNoValues();
+    }
+
+    private Single<Buffer> scrape() {
+        return scrapeCache.scrape(ImmutableSet.of(METRIC_NAME), false, false);
+    }
+
+    private void awaitCollects(int collects) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (collector.collects.get() < collects) {
+            if (System.nanoTime() > deadline) {
+                fail("Expected " + collects + " renders, got " + collector.collects.get());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static class TestCollector extends Collector implements Collector.Describable {
+        private final AtomicInteger collects = new AtomicInteger();
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile RuntimeException failure;
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            collects.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return ImmutableList.of(new MetricFamilySamples(METRIC_NAME, Type.GAUGE, "Test gauge.",
+                    ImmutableList.of(new MetricFamilySamples.Sample(METRIC_NAME, ImmutableList.of(), ImmutableList.of(), 1D))));
+        }
+
+        @Override
+        public List<MetricFamilySamples> describe() {
+            return ImmutableList.of(new MetricFamilySamples(METRIC_NAME, Type.GAUGE, "Test gauge.", ImmutableList.of()));
+        }
+    }
+}